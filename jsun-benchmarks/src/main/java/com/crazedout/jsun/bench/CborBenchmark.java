@@ -0,0 +1,115 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CBOR against Json text for the same data: one bean written to a stream,
+ * and a list of beans encoded from and decoded to a JSun tree.
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CborBenchmark {
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Person person = new Person("John", "Guitar", 40, 4.5, true);
+
+    @State(Scope.Thread)
+    public static class Tree {
+        @Param({"1000"})
+        public int size;
+
+        JSun tree;
+        byte[] json;
+        byte[] cbor;
+
+        @Setup
+        public void setup() {
+            List<Person> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(new Person("John " + i, i % 2 == 0 ? "Guitar" : "Bass", i % 80, i * 0.1, (i & 1) == 0));
+            }
+            json = new JSun(list).toBytes();
+            cbor = new JSun(list).toCbor();
+            // Parsed, so neither encoder can splice Json rendered earlier.
+            tree = JSun.parse(json);
+        }
+    }
+
+    @Benchmark
+    public void pojoJson() throws IOException {
+        JSun.serialize(person, NULL);
+    }
+
+    @Benchmark
+    public void pojoCbor() throws IOException {
+        JSun.serializeCbor(person, NULL);
+    }
+
+    @Benchmark
+    public byte[] encodeJson(Tree tree) {
+        return tree.tree.toBytes();
+    }
+
+    @Benchmark
+    public byte[] encodeCbor(Tree tree) {
+        return tree.tree.toCbor();
+    }
+
+    @Benchmark
+    public JSun decodeJson(Tree tree) {
+        return JSun.parse(tree.json);
+    }
+
+    @Benchmark
+    public JSun decodeCbor(Tree tree) {
+        return JSun.parseCbor(tree.cbor);
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * String escaping, one string value written with writeTo() into a reused StringBuilder.<br>
+ * verbatim writes a BigDecimal of the same length, plus the two quotes, in its place.
+ * It takes the same path through writeTo() but is copied as is, as strings were before they were escaped.
+ * short is an 11 char field value, the others are 1 KB of text.
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+    @Param({"short", "ascii", "quoted", "control"})
+    public String payload;
+
+    private final StringBuilder sink = new StringBuilder(4096);
+    private JSun json;
+    private JSun digits;
+
+    @Setup
+    public void setup() {
+        String unit;
+        switch (payload) {
+            case "short": use("John Lennon"); return;
+            case "ascii": unit = "The quick brown fox jumps over the lazy dog. "; break;
+            case "quoted": unit = "He said \"hello\" to C:\\temp. "; break;
+            default: unit = "line\tone\r\nline\ttwo\n"; break;
+        }
+        StringBuilder sb = new StringBuilder(1024 + unit.length());
+        while (sb.length() < 1024) sb.append(unit);
+        use(sb.toString());
+    }
+
+    private void use(String text) {
+        json = new JSun("name", text);
+        char[] number = new char[text.length() + 2];
+        Arrays.fill(number, '7');
+        // BigDecimal keeps its toString(), so no digits are formatted per call.
+        digits = new JSun("name", new BigDecimal(number));
+    }
+
+    @Benchmark
+    public StringBuilder escaped() throws IOException {
+        sink.setLength(0);
+        json.writeTo(sink);
+        return sink;
+    }
+
+    @Benchmark
+    public StringBuilder verbatim() throws IOException {
+        sink.setLength(0);
+        digits.writeTo(sink);
+        return sink;
+    }
+}
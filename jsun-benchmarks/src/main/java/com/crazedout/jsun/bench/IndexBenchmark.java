@@ -0,0 +1,78 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two values out of a large document, {"persons":[...]} of size beans:
+ * a full JSun.parse() against JSun.index() and a path.
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private byte[] json;
+    private String path;
+
+    @Setup
+    public void setup() {
+        List<Person> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Person("John " + i, i % 2 == 0 ? "Guitar" : "Bass", i % 80, i * 0.1, (i & 1) == 0));
+        }
+        json = new JSun("persons", list).toBytes();
+        path = "persons[" + size / 2 + "]";
+    }
+
+    @Benchmark
+    public Object parse() {
+        JSun person = (JSun) ((List<?>) JSun.parse(json).get("persons")).get(size / 2);
+        return person.get("name") + " " + person.get("age");
+    }
+
+    @Benchmark
+    public Object index() {
+        JSunIndex index = JSun.index(json);
+        return index.getString(path + ".name") + " " + index.getLong(path + ".age");
+    }
+}
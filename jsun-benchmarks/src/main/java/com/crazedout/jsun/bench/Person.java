@@ -0,0 +1,59 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+/**
+ * Bean with a mix of property types, serialized through reflection.
+ * @author Fredrik Roos 2023
+ */
+public class Person {
+
+    private final String name;
+    private final String instrument;
+    private final int age;
+    private final double rating;
+    private final boolean active;
+
+    public Person(String name, String instrument, int age, double rating, boolean active) {
+        this.name = name;
+        this.instrument = instrument;
+        this.age = age;
+        this.rating = rating;
+        this.active = active;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public boolean getActive() {
+        return active;
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunProjection;
+import com.crazedout.jsun.JSunResultWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing all fields against writing two of them through a JSunProjection,
+ * for a bean and for the rows of a StubResultSet.
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static final JSunProjection NAME_AGE = JSunProjection.of("name", "age");
+    private static final JSunProjection ID_NAME = JSunProjection.of("id", "name");
+
+    @Param({"10000"})
+    public int rows;
+
+    private final Person person = new Person("John", "Guitar", 40, 4.5, true);
+
+    @Benchmark
+    public void pojoAll() throws IOException {
+        JSun.serialize(person, NULL);
+    }
+
+    @Benchmark
+    public void pojoProjected() throws IOException {
+        JSun.serialize(person, NULL, NAME_AGE);
+    }
+
+    @Benchmark
+    public long rowsAll() throws SQLException, IOException {
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        return writer.write(StubResultSet.of(rows), NULL);
+    }
+
+    @Benchmark
+    public long rowsProjected() throws SQLException, IOException {
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        writer.setProjection(ID_NAME);
+        return writer.write(StubResultSet.of(rows), NULL);
+    }
+}
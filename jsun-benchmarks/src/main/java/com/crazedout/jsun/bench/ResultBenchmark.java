@@ -0,0 +1,137 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSFactory;
+import com.crazedout.jsun.JSunResult;
+import com.crazedout.jsun.JSunResultWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSet paths over StubResultSet, 5 columns per row.
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static final Writer NULL_WRITER = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Rows collected as JSun, then written as UTF-8.
+     */
+    @Benchmark
+    public int jsunResult() throws SQLException {
+        return new JSunResult(StubResultSet.of(rows), true).toBytes().length;
+    }
+
+    /**
+     * Rows collected as JSun, then toString(), which validates the Json.
+     */
+    @Benchmark
+    public int jsunResultString() throws SQLException {
+        return new JSunResult(StubResultSet.of(rows), true).toString().length();
+    }
+
+    /**
+     * Rows streamed straight to an OutputStream.
+     */
+    @Benchmark
+    public long resultWriter() throws SQLException, IOException {
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        return writer.write(StubResultSet.of(rows), NULL);
+    }
+
+    /**
+     * As resultWriter, with rows read ahead on a fetch thread.<br>
+     * StubResultSet never waits on I/O, so this shows what the pipeline costs,
+     * a driver that does wait is where it pays off.
+     */
+    @Benchmark
+    public long resultWriterPipelined() throws SQLException, IOException {
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        writer.setPipelineRows(1024);
+        return writer.write(StubResultSet.of(rows), NULL);
+    }
+
+    /**
+     * HTML table page around the Json of the result.
+     */
+    @Benchmark
+    public int htmlTable() throws SQLException {
+        return JSFactory.toHTMTable(new JSunResult(StubResultSet.of(rows), true)).length();
+    }
+
+    /**
+     * HTML table page streamed in chunks as the rows are read.
+     */
+    @Benchmark
+    public long htmlTableStreaming() throws SQLException, IOException {
+        return JSFactory.toHTMLTable(StubResultSet.of(rows), NULL_WRITER);
+    }
+}
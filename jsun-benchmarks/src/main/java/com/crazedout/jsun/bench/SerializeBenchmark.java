@@ -0,0 +1,121 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSun object paths: one bean, serialize() into a reused StringBuilder, eval(), a list of beans and a wide object built with put().
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+
+    private final Person person = new Person("John", "Guitar", 40, 4.5, true);
+    private final StringBuilder sink = new StringBuilder(1024);
+
+    @State(Scope.Thread)
+    public static class Persons {
+        @Param({"1000", "100000"})
+        public int size;
+
+        List<Person> list;
+
+        @Setup
+        public void setup() {
+            list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(new Person("John " + i, i % 2 == 0 ? "Guitar" : "Bass", i % 80, i * 0.1, (i & 1) == 0));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        @Param({"16", "1024"})
+        public int width;
+
+        String[] keys;
+
+        @Setup
+        public void setup() {
+            keys = new String[width];
+            for (int i = 0; i < width; i++) keys[i] = "key" + i;
+        }
+    }
+
+    @Benchmark
+    public String pojoToString() {
+        return new JSun(person).toString();
+    }
+
+    /**
+     * The pooled, allocation free path, gc.alloc.rate.norm should read 0.
+     */
+    @Benchmark
+    public StringBuilder pojoSerialize() throws IOException {
+        sink.setLength(0);
+        JSun.serialize(person, sink);
+        return sink;
+    }
+
+    @Benchmark
+    public String pojoEval() {
+        return new JSun(person).eval();
+    }
+
+    @Benchmark
+    public String list(Persons persons) {
+        return new JSun(persons.list).toString();
+    }
+
+    /**
+     * One object with width keys, half ints, half strings.
+     */
+    @Benchmark
+    public String widePut(Keys keys) {
+        JSun json = new JSun();
+        String[] k = keys.keys;
+        for (int i = 0; i < k.length; i++) {
+            if ((i & 1) == 0) json.put(k[i], i);
+            else json.put(k[i], k[i]);
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunResultWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Counting active rows in a file of rows written by JSunResultWriter:
+ * the whole file read and parsed, against JSun.streamArray().
+ * @author Fredrik Roos 2023
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path path;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        path = Files.createTempFile("jsun-rows", ".json");
+        try (OutputStream out = Files.newOutputStream(path)) {
+            JSunResultWriter writer = new JSunResultWriter();
+            writer.setRowsAsObjects(true);
+            writer.write(StubResultSet.of(rows), out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private static boolean active(Object row) {
+        return Boolean.TRUE.equals(((JSun) row).get("active"));
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        JSun array = JSun.parse(Files.readAllBytes(path));
+        List<?> list = (List<?>) array.getKeyPairList().get(0).getValue();
+        return list.stream().filter(StreamBenchmark::active).count();
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        try (Stream<JSun> stream = JSun.streamArray(path)) {
+            return stream.filter(StreamBenchmark::active).count();
+        }
+    }
+
+    @Benchmark
+    public long streamParallel() throws IOException {
+        try (Stream<JSun> stream = JSun.streamArray(path)) {
+            return stream.parallel().filter(StreamBenchmark::active).count();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+/**
+ * In memory ResultSet of generated rows: id BIGINT, name VARCHAR, price DOUBLE, qty INTEGER, active BIT.<br>
+ * Only the methods JSun uses are implemented. Every call goes through a Proxy,
+ * that cost is part of every result but the same from release to release.
+ * @author Fredrik Roos 2023
+ */
+final class StubResultSet implements InvocationHandler {
+
+    private static final String[] COLUMNS = {"id", "name", "price", "qty", "active"};
+    private static final int[] TYPES = {Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.INTEGER, Types.BIT};
+    private static final String[] NAMES = {"John", "Paul", "George", "Ringo"};
+
+    private final int rows;
+    private int row = -1;
+    private boolean wasNull;
+
+    private StubResultSet(int rows) {
+        this.rows = rows;
+    }
+
+    static ResultSet of(int rows) {
+        return (ResultSet) Proxy.newProxyInstance(StubResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new StubResultSet(rows));
+    }
+
+    private static ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(StubResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return COLUMNS.length;
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return COLUMNS[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return TYPES[(Integer) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private Object cell(Object column) {
+        int index = column instanceof Integer ? (Integer) column - 1 : indexOf((String) column);
+        Object value;
+        switch (index) {
+            case 0:
+                value = (long) row;
+                break;
+            case 1:
+                value = NAMES[row & 3] + " " + row;
+                break;
+            case 2:
+                value = row * 0.25;
+                break;
+            case 3:
+                value = row % 100;
+                break;
+            default:
+                value = (row & 1) == 0;
+        }
+        wasNull = false;
+        return value;
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < COLUMNS.length; i++) if (COLUMNS[i].equalsIgnoreCase(name)) return i;
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "next":
+                return ++row < rows;
+            case "getMetaData":
+                return metaData();
+            case "getObject":
+                return cell(args[0]);
+            case "getString":
+                return cell(args[0]).toString();
+            case "getLong":
+                return ((Number) cell(args[0])).longValue();
+            case "getInt":
+                return ((Number) cell(args[0])).intValue();
+            case "getDouble":
+                return ((Number) cell(args[0])).doubleValue();
+            case "getFloat":
+                return ((Number) cell(args[0])).floatValue();
+            case "getBigDecimal":
+                return BigDecimal.valueOf(((Number) cell(args[0])).doubleValue());
+            case "getBoolean":
+                return cell(args[0]);
+            case "wasNull":
+                return wasNull;
+            case "setFetchSize":
+            case "close":
+                return null;
+            case "getFetchSize":
+                return 0;
+            case "isClosed":
+                return false;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "StubResultSet";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
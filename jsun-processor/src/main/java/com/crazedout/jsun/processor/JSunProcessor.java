@@ -0,0 +1,181 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a JSunSerializer for every class annotated with @JSunClass.<br>
+ * The generated serializer puts the same keys as JSun(Object) does by reflection:
+ * all declared public getters (e.i getName()), lower-cased and without "get",
+ * except the ones listed in @JSunClass(exclude={...}), and if @JSunClass(fields={...})
+ * is given, only the ones its paths start with.<br>
+ * Keys are put in source order. A getter that throws, checked or not, is left out.
+ * @author Fredrik Roos 2023
+ */
+@SupportedAnnotationTypes(JSunProcessor.JSUN_CLASS)
+public class JSunProcessor extends AbstractProcessor {
+
+    static final String JSUN_CLASS = "com.crazedout.jsun.JSunClass";
+    static final String SUFFIX = "_JSunSerializer";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) continue;
+                TypeElement type = (TypeElement) element;
+                if (!isAccessible(type)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            "No JSunSerializer generated for private class " + type + ".", type);
+                    continue;
+                }
+                try {
+                    generate(type, annotation);
+                } catch (IOException ex) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Could not generate JSunSerializer: " + ex.getMessage(), type);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type, TypeElement annotation) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+        List<String> excludeList = values(type, annotation, "exclude");
+        Set<String> fieldSet = new HashSet<>();
+        for (String path : values(type, annotation, "fields")) {
+            int dot = path.indexOf('.');
+            fieldSet.add((dot < 0 ? path : path.substring(0, dot)).toLowerCase(Locale.ROOT));
+        }
+
+        List<ExecutableElement> getters = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Element e : type.getEnclosedElements()) {
+            if (e.getKind() != ElementKind.METHOD || !isGetter((ExecutableElement) e)) continue;
+            String name = e.getSimpleName().toString().substring(3).toLowerCase();
+            if (excludeList.contains(name)) continue;
+            if (!fieldSet.isEmpty() && !fieldSet.contains(name)) continue;
+            getters.add((ExecutableElement) e);
+            names.add(name);
+        }
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+        try (Writer out = file.openWriter()) {
+            if (!packageName.isEmpty()) out.write("package " + packageName + ";\n\n");
+            out.write("/**\n * Generated by jsun-processor for " + typeName + ", do not edit.\n */\n");
+            out.write("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+            out.write("public final class " + simpleName
+                    + " extends com.crazedout.jsun.JSunSerializer<" + typeName + "> {\n\n");
+            out.write("    public " + simpleName + "() {\n        super(");
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) out.write(", ");
+                out.write("\"" + names.get(i) + "\"");
+            }
+            out.write(");\n    }\n\n");
+            out.write("    @Override\n    public void serialize(" + typeName + " obj, com.crazedout.jsun.JSun json) {\n");
+            for (int i = 0; i < getters.size(); i++) {
+                ExecutableElement getter = getters.get(i);
+                String target = getter.getModifiers().contains(Modifier.STATIC) ? typeName : "obj";
+                // A getter that throws is left out, as JSun(Object) does by reflection.
+                out.write("        try {\n");
+                out.write("            put(json, " + i + ", " + target + "." + getter.getSimpleName() + "());\n");
+                out.write("        } catch (Exception ex) {\n");
+                out.write("            ex.printStackTrace();\n");
+                out.write("        }\n");
+            }
+            out.write("    }\n}\n");
+        }
+    }
+
+    /**
+     * Public, no arguments, non void and named getX...
+     */
+    private static boolean isGetter(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) return false;
+        if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) return false;
+        String name = method.getSimpleName().toString();
+        return name.length() > 3 && name.startsWith("get") && name.charAt(3) >= 'A' && name.charAt(3) <= 'Z';
+    }
+
+    /**
+     * The generated class lives in the package of type, so type and its outer classes must not be private.
+     */
+    private static boolean isAccessible(TypeElement type) {
+        Element e = type;
+        while (e instanceof TypeElement) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) return false;
+            if (((TypeElement) e).getNestingKind() == NestingKind.LOCAL
+                    || ((TypeElement) e).getNestingKind() == NestingKind.ANONYMOUS) return false;
+            e = e.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /**
+     * The strings of the array element named elementName of the @JSunClass on type.
+     */
+    private static List<String> values(TypeElement type, TypeElement annotation, String elementName) {
+        List<String> list = new ArrayList<>();
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals(elementName)) continue;
+                Object value = entry.getValue().getValue();
+                if (value instanceof List<?>) {
+                    for (Object v : (List<?>) value) list.add(String.valueOf(((AnnotationValue) v).getValue()));
+                }
+            }
+        }
+        return list;
+    }
+}
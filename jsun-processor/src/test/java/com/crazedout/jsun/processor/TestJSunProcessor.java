@@ -0,0 +1,95 @@
+package com.crazedout.jsun.processor;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunProcessor {
+
+    private static final String SOURCE =
+            "package beans;\n" +
+            "import com.crazedout.jsun.JSunClass;\n" +
+            "import java.util.Arrays;\n" +
+            "import java.util.List;\n" +
+            "@JSunClass(exclude=\"secret\")\n" +
+            "public class Band {\n" +
+            "    public String getName() { return \"Beatles\"; }\n" +
+            "    public int getYear() { return 1960; }\n" +
+            "    public String getSecret() { return \"Pete\"; }\n" +
+            "    public List<String> getMembers() { return Arrays.asList(\"John\", \"Paul\"); }\n" +
+            "    public boolean isActive() { return false; }\n" +
+            "    String getHidden() { return \"hidden\"; }\n" +
+            "    @JSunClass\n" +
+            "    public static class Album {\n" +
+            "        public String getTitle() { return \"Help!\"; }\n" +
+            "    }\n" +
+            "    @JSunClass\n" +
+            "    public static class Letter {\n" +
+            "        public String getTo() { return \"Paul\"; }\n" +
+            "        public char getGrade() { return 'A'; }\n" +
+            "        public String getBody() throws java.io.IOException { throw new java.io.IOException(\"Lost\"); }\n" +
+            "        public String getBroken() { throw new IllegalStateException(\"Broken\"); }\n" +
+            "        public String getCaller() { return new Throwable().getStackTrace()[1].getClassName(); }\n" +
+            "    }\n" +
+            "    @JSunClass(fields={\"Title\", \"tracks.name\"})\n" +
+            "    public static class Single {\n" +
+            "        public String getTitle() { return \"Yesterday\"; }\n" +
+            "        public int getYear() { return 1965; }\n" +
+            "        public List<String> getTracks() { return Arrays.asList(\"A\", \"B\"); }\n" +
+            "    }\n" +
+            "}\n";
+
+    @Test
+    public void testGeneratedSerializer(@TempDir Path dir) throws Exception {
+        Path src = dir.resolve("beans/Band.java");
+        Files.createDirectories(src.getParent());
+        Files.write(src, SOURCE.getBytes(StandardCharsets.UTF_8));
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            fm.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classes.toFile()));
+            fm.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(classes.toFile()));
+            Iterable<? extends JavaFileObject> units = fm.getJavaFileObjects(src.toFile());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fm, null,
+                    java.util.Arrays.asList("-classpath", System.getProperty("java.class.path")), null, units);
+            task.setProcessors(Collections.singletonList(new JSunProcessor()));
+            assertTrue(task.call());
+        }
+        assertTrue(new File(classes.toFile(), "beans/Band_JSunSerializer.java").exists());
+        assertTrue(new File(classes.toFile(), "beans/Band$Album_JSunSerializer.java").exists());
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> band = loader.loadClass("beans.Band");
+            assertTrue(JSunSerializer.class.isAssignableFrom(loader.loadClass("beans.Band" + JSunSerializer.SUFFIX)));
+            Object obj = band.getDeclaredConstructor().newInstance();
+            assertEquals("{\"name\":\"Beatles\",\"year\":1960,\"members\":[\"John\",\"Paul\"]}", new JSun(obj).eval());
+            Object album = loader.loadClass("beans.Band$Album").getDeclaredConstructor().newInstance();
+            assertEquals("{\"title\":\"Help!\"}", new JSun(album).eval());
+            // Getters that throw are left out, and getCaller() tells who called it.
+            Object letter = loader.loadClass("beans.Band$Letter").getDeclaredConstructor().newInstance();
+            assertEquals("{\"to\":\"Paul\",\"grade\":\"A\",\"caller\":\"beans.Band$Letter" + JSunSerializer.SUFFIX + "\"}", new JSun(letter).eval());
+            Object single = loader.loadClass("beans.Band$Single").getDeclaredConstructor().newInstance();
+            assertEquals("{\"title\":\"Yesterday\",\"tracks\":[\"A\",\"B\"]}", new JSun(single).eval());
+        }
+        String source = new String(Files.readAllBytes(classes.resolve("beans/Band$Single_JSunSerializer.java")), StandardCharsets.UTF_8);
+        assertTrue(source.contains("super(\"title\", \"tracks\")"));
+        assertFalse(source.contains("getYear"));
+    }
+}
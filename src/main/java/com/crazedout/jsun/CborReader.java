@@ -0,0 +1,467 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads CBOR (RFC 8949) into the JSun model, the reverse of CborWriter.<br>
+ * Maps become JSun, arrays become Json arrays and integers become Integer, Long
+ * or BigInteger, the smallest that holds the value, as JSun.parse() does.
+ * Floats of any precision become Double, bignums BigInteger and decimal
+ * fractions BigDecimal. Other tags are skipped, byte strings are not supported.<br>
+ * bind() fills objects through the same JSunBinder plans as JSun.bind().
+ * @author Fredrik Roos 2023
+ */
+final class CborReader {
+
+    private static final int MAX_DEPTH = 1024;
+
+    private final byte[] data;
+    private final int length;
+    private int pos;
+
+    CborReader(byte[] data) {
+        this.data = data;
+        this.length = data.length;
+    }
+
+    /**
+     * Reads a CBOR map or array.
+     * @return JSun
+     */
+    JSun parseDocument() {
+        int start = pos;
+        Object value = readValue(0);
+        if (pos < length) throw error("Unexpected trailing byte");
+        if (value instanceof JSun) return (JSun) value;
+        if (!(value instanceof JSun.JsonArray)) throw error(start, "Expected a map or an array");
+        JSun result = new JSun();
+        result.add(new JSun.KeyValuePair(JSun.ARRAY_TAG, value));
+        return result;
+    }
+
+    /**
+     * Binds a CBOR map to a new instance of type.
+     */
+    <T> T bindDocument(Class<T> type) {
+        Object result = readValue(type, type, 0);
+        if (pos < length) throw error("Unexpected trailing byte");
+        return type.cast(result);
+    }
+
+    /**
+     * Binds a CBOR array to a List of type.
+     */
+    <T> List<T> bindList(Class<T> type) {
+        if (pos >= length || major(data[pos]) != CborWriter.ARRAY) throw error("Expected an array");
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) readList(ArrayList.class, type, 0);
+        if (pos < length) throw error("Unexpected trailing byte");
+        return result;
+    }
+
+    private static int major(byte initial) {
+        return (initial & 0xFF) >>> 5;
+    }
+
+    private int next() {
+        if (pos >= length) throw error("Unexpected end of input");
+        return data[pos++] & 0xFF;
+    }
+
+    private int peek() {
+        if (pos >= length) throw error("Unexpected end of input");
+        return data[pos] & 0xFF;
+    }
+
+    /**
+     * Reads the argument of an initial byte, -1 for indefinite length.
+     */
+    private long argument(int initial) {
+        int info = initial & 31;
+        if (info < 24) return info;
+        if (info == 31) {
+            int major = initial >>> 5;
+            if (major < CborWriter.BYTES || major > CborWriter.MAP) throw error(pos - 1, "Unexpected break");
+            return -1;
+        }
+        if (info > 27) throw error(pos - 1, "Reserved additional information " + info);
+        int n = 1 << (info - 24);
+        if (pos + n > length) throw error("Unexpected end of input");
+        long v = 0;
+        for (int i = 0; i < n; i++) v = (v << 8) | (data[pos++] & 0xFF);
+        return v;
+    }
+
+    /**
+     * Reads a definite length, at least one byte per item must be left.
+     */
+    private int count(long n, int minBytes) {
+        if (n < 0 || n > (length - pos) / minBytes) throw error("Length " + Long.toUnsignedString(n) + " past end of input");
+        return (int) n;
+    }
+
+    private boolean atBreak() {
+        if (peek() != CborWriter.BREAK) return false;
+        pos++;
+        return true;
+    }
+
+    Object readValue(int depth) {
+        int start = pos;
+        int initial = next();
+        switch (initial >>> 5) {
+            case CborWriter.UNSIGNED:
+                return integer(argument(initial), false);
+            case CborWriter.NEGATIVE:
+                return integer(argument(initial), true);
+            case CborWriter.BYTES:
+                throw error(start, "Byte strings are not supported");
+            case CborWriter.TEXT:
+                return readText(initial);
+            case CborWriter.ARRAY:
+                return readArray(initial, depth);
+            case CborWriter.MAP:
+                return readMap(initial, depth);
+            case CborWriter.TAG:
+                return readTagged(argument(initial), depth);
+            default:
+                return readSimple(initial, start);
+        }
+    }
+
+    private static Object integer(long n, boolean negative) {
+        if (n < 0) {
+            // Past Long.MAX_VALUE as unsigned.
+            BigInteger v = new BigInteger(Long.toUnsignedString(n));
+            return negative ? v.not() : v;
+        }
+        long v = negative ? ~n : n;
+        return v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE ? (Object) (int) v : (Object) v;
+    }
+
+    private String readText(int initial) {
+        long n = argument(initial);
+        if (n >= 0) {
+            int len = count(n, 1);
+            String s = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+        StringBuilder sb = new StringBuilder();
+        while (!atBreak()) {
+            int chunk = next();
+            if (chunk >>> 5 != CborWriter.TEXT || (chunk & 31) == 31) throw error(pos - 1, "Expected a text chunk");
+            sb.append(readText(chunk));
+        }
+        return sb.toString();
+    }
+
+    private JSun.JsonArray readArray(int initial, int depth) {
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        long n = argument(initial);
+        List<Object> items;
+        if (n >= 0) {
+            int size = count(n, 1);
+            items = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) items.add(readValue(depth));
+        } else {
+            items = new ArrayList<>();
+            while (!atBreak()) items.add(readValue(depth));
+        }
+        return JSun.JsonArray.wrap(items);
+    }
+
+    private JSun readMap(int initial, int depth) {
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        long n = argument(initial);
+        int size = n >= 0 ? count(n, 2) : -1;
+        JSun jsun = new JSun();
+        for (int i = 0; size < 0 ? !atBreak() : i < size; i++) {
+            int keyPos = pos;
+            String key = readKey();
+            Object value = readValue(depth);
+            if (jsun.find(key) != null) throw error(keyPos, "Duplicate key '" + key + "'");
+            jsun.add(new JSun.KeyValuePair(key, value));
+        }
+        return jsun;
+    }
+
+    private String readKey() {
+        int initial = next();
+        if (initial >>> 5 != CborWriter.TEXT) throw error(pos - 1, "Expected a text key");
+        return readText(initial);
+    }
+
+    private Object readTagged(long tag, int depth) {
+        if (tag == CborWriter.POSITIVE_BIGNUM || tag == CborWriter.NEGATIVE_BIGNUM) {
+            int initial = next();
+            if (initial >>> 5 != CborWriter.BYTES || (initial & 31) == 31) throw error(pos - 1, "Expected a bignum");
+            int len = count(argument(initial), 1);
+            byte[] magnitude = new byte[len];
+            System.arraycopy(data, pos, magnitude, 0, len);
+            pos += len;
+            BigInteger v = new BigInteger(1, magnitude);
+            return tag == CborWriter.NEGATIVE_BIGNUM ? v.not() : v;
+        }
+        if (tag == CborWriter.DECIMAL_FRACTION) {
+            int start = pos;
+            Object value = readValue(depth);
+            if (!(value instanceof JSun.JsonArray) || ((JSun.JsonArray) value).arrList.size() != 2) {
+                throw error(start, "Expected [exponent, mantissa]");
+            }
+            List<Object> parts = ((JSun.JsonArray) value).arrList;
+            if (!(parts.get(0) instanceof Integer) || !isInteger(parts.get(1))) throw error(start, "Expected [exponent, mantissa]");
+            return new BigDecimal(new BigInteger(parts.get(1).toString()), -(Integer) parts.get(0));
+        }
+        return readValue(depth);
+    }
+
+    private static boolean isInteger(Object v) {
+        return v instanceof Integer || v instanceof Long || v instanceof BigInteger;
+    }
+
+    private Object readSimple(int initial, int start) {
+        switch (initial) {
+            case CborWriter.FALSE:
+                return Boolean.FALSE;
+            case CborWriter.TRUE:
+                return Boolean.TRUE;
+            case CborWriter.NULL:
+            case CborWriter.NULL + 1:
+                // null and undefined
+                return null;
+            case 0xF9:
+                return (double) halfToFloat((int) argument(initial));
+            case CborWriter.FLOAT:
+                return floatToDouble(Float.intBitsToFloat((int) argument(initial)));
+            case CborWriter.DOUBLE:
+                return Double.longBitsToDouble(argument(initial));
+            case CborWriter.BREAK:
+                throw error(start, "Unexpected break");
+            default:
+                throw error(start, "Unsupported simple value " + (initial & 31));
+        }
+    }
+
+    /**
+     * Widens f to the double its Json, Float.toString(f), reads as,
+     * so a Float reads back from CBOR as it would from Json.
+     */
+    private static double floatToDouble(float f) {
+        if (Float.isNaN(f) || Float.isInfinite(f)) return f;
+        return Double.parseDouble(Float.toString(f));
+    }
+
+    private static float halfToFloat(int half) {
+        int exp = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        float v;
+        if (exp == 0) v = mantissa * 0x1p-24f;
+        else if (exp == 31) v = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        else v = (mantissa + 1024) * (float) Math.pow(2, exp - 25);
+        return (half & 0x8000) != 0 ? -v : v;
+    }
+
+    private Object readValue(Class<?> type, Type genericType, int depth) {
+        int start = pos;
+        int initial = peek();
+        if (initial == CborWriter.NULL || initial == CborWriter.NULL + 1) {
+            pos++;
+            if (type.isPrimitive()) throw error(start, "Null for " + type.getName());
+            return null;
+        }
+        switch (JSunBinder.kind(type)) {
+            case JSunBinder.INT: return (int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case JSunBinder.LONG: return readIntegral(Long.MIN_VALUE, Long.MAX_VALUE);
+            case JSunBinder.SHORT: return (short) readIntegral(Short.MIN_VALUE, Short.MAX_VALUE);
+            case JSunBinder.BYTE: return (byte) readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE);
+            case JSunBinder.DOUBLE: return readDouble();
+            case JSunBinder.FLOAT: return (float) readDouble();
+            case JSunBinder.BOOLEAN: return readBoolean();
+            case JSunBinder.CHAR: return readChar();
+            default:
+        }
+        if (type == String.class) {
+            if (initial >>> 5 == CborWriter.TEXT) return readText(next());
+            return String.valueOf(JSun.JsonArray.unwrap(readValue(depth)));
+        }
+        if (type == Object.class || type == JSun.class) {
+            Object v = readValue(depth);
+            if (type == JSun.class && !(v instanceof JSun)) throw error(start, "Expected a map");
+            return JSun.JsonArray.unwrap(v);
+        }
+        if (type == BigDecimal.class || type == BigInteger.class || type == Number.class) {
+            Object v = readValue(depth);
+            if (!(v instanceof Number)) throw error(start, "Expected number");
+            if (type == Number.class) return v;
+            BigDecimal d = v instanceof BigDecimal ? (BigDecimal) v : new BigDecimal(v.toString());
+            return type == BigDecimal.class ? d : d.toBigIntegerExact();
+        }
+        if (type.isEnum()) {
+            if (initial >>> 5 != CborWriter.TEXT) throw error(start, "Expected text");
+            return JSunBinder.enumValue(type, readText(next()));
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return readList(type, JSunBinder.elementType(genericType), depth);
+        }
+        if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw error(start, "Cannot bind to " + type.getName());
+        }
+        return readObject(type, depth);
+    }
+
+    private Collection<Object> readList(Class<?> type, Class<?> elementType, int depth) {
+        int initial = next();
+        if (initial >>> 5 != CborWriter.ARRAY) throw error(pos - 1, "Expected an array");
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        Collection<Object> list = Set.class.isAssignableFrom(type) ? new LinkedHashSet<>() : new ArrayList<>();
+        long n = argument(initial);
+        int size = n >= 0 ? count(n, 1) : -1;
+        for (int i = 0; size < 0 ? !atBreak() : i < size; i++) list.add(readValue(elementType, elementType, depth));
+        return list;
+    }
+
+    private Object readObject(Class<?> type, int depth) {
+        JSunBinder.BindPlan plan = JSunBinder.plan(type);
+        int initial = next();
+        if (initial >>> 5 != CborWriter.MAP) throw error(pos - 1, "Expected a map for " + type.getName());
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        int arguments = plan.constructorArguments();
+        Object target = arguments > 0 ? null : plan.newInstance();
+        Object[] args = arguments > 0 ? new Object[arguments] : null;
+        long n = argument(initial);
+        int size = n >= 0 ? count(n, 2) : -1;
+        for (int i = 0; size < 0 ? !atBreak() : i < size; i++) {
+            JSunBinder.Property property = plan.property(readKey());
+            if (property == null) {
+                readValue(depth);
+            } else if (args != null) {
+                args[property.parameter] = readValue(property.type, property.genericType, depth);
+            } else {
+                set(target, property, depth);
+            }
+        }
+        return args != null ? plan.construct(args) : target;
+    }
+
+    /**
+     * Reads the value straight into the setter, primitives without boxing.
+     */
+    private void set(Object target, JSunBinder.Property property, int depth) {
+        if (property.kind != JSunBinder.OBJECT && peek() == CborWriter.NULL) {
+            // null leaves a primitive at its default.
+            pos++;
+            return;
+        }
+        MethodHandle setter = property.setter;
+        try {
+            switch (property.kind) {
+                case JSunBinder.INT:
+                    setter.invokeExact(target, (int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                    break;
+                case JSunBinder.LONG:
+                    setter.invokeExact(target, readIntegral(Long.MIN_VALUE, Long.MAX_VALUE));
+                    break;
+                case JSunBinder.SHORT:
+                    setter.invokeExact(target, (short) readIntegral(Short.MIN_VALUE, Short.MAX_VALUE));
+                    break;
+                case JSunBinder.BYTE:
+                    setter.invokeExact(target, (byte) readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE));
+                    break;
+                case JSunBinder.DOUBLE:
+                    setter.invokeExact(target, readDouble());
+                    break;
+                case JSunBinder.FLOAT:
+                    setter.invokeExact(target, (float) readDouble());
+                    break;
+                case JSunBinder.BOOLEAN:
+                    setter.invokeExact(target, readBoolean());
+                    break;
+                case JSunBinder.CHAR:
+                    setter.invokeExact(target, readChar());
+                    break;
+                default:
+                    setter.invokeExact(target, readValue(property.type, property.genericType, depth));
+            }
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new RuntimeException("Could not set '" + property.name + "': " + t.getMessage(), t);
+        }
+    }
+
+    private long readIntegral(long min, long max) {
+        int start = pos;
+        int initial = next();
+        int major = initial >>> 5;
+        if (major != CborWriter.UNSIGNED && major != CborWriter.NEGATIVE) throw error(start, "Expected integer");
+        long n = argument(initial);
+        if (n < 0) throw error(start, "Number out of range");
+        long v = major == CborWriter.NEGATIVE ? ~n : n;
+        if (v < min || v > max) throw error(start, "Number out of range");
+        return v;
+    }
+
+    private double readDouble() {
+        int start = pos;
+        int initial = peek();
+        int major = initial >>> 5;
+        if (major == CborWriter.UNSIGNED || major == CborWriter.NEGATIVE) return readIntegral(Long.MIN_VALUE, Long.MAX_VALUE);
+        if (initial == 0xF9 || initial == CborWriter.FLOAT || initial == CborWriter.DOUBLE) {
+            return (Double) readSimple(next(), start);
+        }
+        throw error(start, "Expected number");
+    }
+
+    private boolean readBoolean() {
+        int start = pos;
+        int initial = next();
+        if (initial == CborWriter.TRUE) return true;
+        if (initial == CborWriter.FALSE) return false;
+        throw error(start, "Expected boolean");
+    }
+
+    private char readChar() {
+        int start = pos;
+        int initial = next();
+        if (initial >>> 5 != CborWriter.TEXT) throw error(start, "Expected text");
+        String s = readText(initial);
+        if (s.length() != 1) throw error(start, "Expected one character");
+        return s.charAt(0);
+    }
+
+    private RuntimeException error(String message) {
+        return error(pos, message);
+    }
+
+    private RuntimeException error(int at, String message) {
+        return new RuntimeException(message + " at offset " + at + ".");
+    }
+}
@@ -0,0 +1,415 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Writes the JSun model as CBOR (RFC 8949) instead of Json text.<br>
+ * Walks JSun, JsonArray and objects the way JSunWriter does, objects through
+ * the same JSunPlan, so a JSun or an object reads back from CBOR as it would from Json.
+ * Integers are written in the fewest bytes, doubles as single precision when that
+ * holds them exactly and reads back as the same double, BigInteger as a bignum and
+ * BigDecimal as a decimal fraction.
+ * Objects are written as indefinite length maps, since a getter that fails is left out.
+ * @author Fredrik Roos 2023
+ */
+final class CborWriter {
+
+    static final int UNSIGNED = 0, NEGATIVE = 1, BYTES = 2, TEXT = 3, ARRAY = 4, MAP = 5, TAG = 6;
+    static final int FALSE = 0xF4, TRUE = 0xF5, NULL = 0xF6, FLOAT = 0xFA, DOUBLE = 0xFB, BREAK = 0xFF;
+    static final int INDEFINITE_MAP = 0xBF;
+    static final int POSITIVE_BIGNUM = 2, NEGATIVE_BIGNUM = 3, DECIMAL_FRACTION = 4;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte[] buf;
+    private int pos;
+    private OutputStream stream;
+    private final char[] digits = new char[DoubleFormat.MAX_CHARS];
+
+    /**
+     * Writes to a growable byte[].
+     */
+    CborWriter() {
+        this.buf = new byte[256];
+    }
+
+    CborWriter(OutputStream stream) {
+        this.buf = new byte[stream != null ? BUFFER_SIZE : 256];
+        this.stream = stream;
+    }
+
+    /**
+     * Points this writer, as new, at stream or at its own byte[] if null.
+     */
+    void reset(OutputStream stream) {
+        this.stream = stream;
+        this.pos = 0;
+        if (stream != null && buf.length < BUFFER_SIZE) buf = new byte[BUFFER_SIZE];
+    }
+
+    int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * @return the bytes written so far.
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    void flush() throws IOException {
+        if (stream == null) return;
+        drain();
+        stream.flush();
+    }
+
+    private void drain() throws IOException {
+        stream.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    private void require(int n) throws IOException {
+        if (pos + n <= buf.length) return;
+        if (stream != null) {
+            drain();
+            if (n <= buf.length) return;
+        }
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+    }
+
+    /**
+     * Encodes name as a CBOR text string, for EncodedKey.
+     */
+    static byte[] text(String name) {
+        CborWriter writer = new CborWriter();
+        try {
+            writer.writeText(name);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+        return writer.toBytes();
+    }
+
+    void writeJSun(JSun jsun) throws IOException {
+        KeyValueList pairs = (KeyValueList) jsun.getKeyPairList();
+        int size = pairs.size();
+        if (size > 0 && pairs.get(0).name.equals(JSun.ARRAY_TAG)) {
+            if (size == 1) {
+                writeValue(pairs.get(0));
+                return;
+            }
+            head(ARRAY, size);
+            for (int i = 0; i < size; i++) writeValue(pairs.get(i));
+            return;
+        }
+        head(MAP, size);
+        for (int i = 0; i < size; i++) {
+            JSun.KeyValuePair pair = pairs.get(i);
+            if (pair.encodedKey != null) writeRaw(pair.encodedKey.cbor);
+            else writeText(pair.name);
+            writeValue(pair);
+        }
+    }
+
+    private void writeValue(JSun.KeyValuePair pair) throws IOException {
+        switch (pair.kind) {
+            case JSun.KeyValuePair.INT:
+            case JSun.KeyValuePair.LONG:
+                writeLong(pair.bits);
+                break;
+            case JSun.KeyValuePair.DOUBLE:
+                writeDouble(Double.longBitsToDouble(pair.bits));
+                break;
+            case JSun.KeyValuePair.BOOLEAN:
+                writeSimple(pair.bits != 0 ? TRUE : FALSE);
+                break;
+            default:
+                writeValue(pair.value);
+        }
+    }
+
+    void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writeSimple(NULL);
+        } else if (value instanceof String) {
+            writeText((String) value);
+        } else if (value instanceof JSun) {
+            writeJSun((JSun) value);
+        } else if (value instanceof JSun.JsonArray) {
+            List<Object> items = ((JSun.JsonArray) value).arrList;
+            head(ARRAY, items.size());
+            for (int i = 0; i < items.size(); i++) writeValue(items.get(i));
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            writeSimple((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Character) {
+            writeText(value.toString());
+        } else if (value instanceof BigInteger) {
+            writeBigInteger((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal d = (BigDecimal) value;
+            head(TAG, DECIMAL_FRACTION);
+            head(ARRAY, 2);
+            writeLong(-d.scale());
+            writeBigInteger(d.unscaledValue());
+        } else if (value instanceof int[]) {
+            int[] values = (int[]) value;
+            head(ARRAY, values.length);
+            for (int v : values) writeLong(v);
+        } else if (value instanceof long[]) {
+            long[] values = (long[]) value;
+            head(ARRAY, values.length);
+            for (long v : values) writeLong(v);
+        } else if (value instanceof double[]) {
+            double[] values = (double[]) value;
+            head(ARRAY, values.length);
+            for (double v : values) writeDouble(v);
+        } else if (value instanceof boolean[]) {
+            boolean[] values = (boolean[]) value;
+            head(ARRAY, values.length);
+            for (boolean v : values) writeSimple(v ? TRUE : FALSE);
+        } else {
+            writeText(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Writes obj straight from its JSunPlan, as JSunWriter.writeObject() does.
+     */
+    void writeObject(Object obj) throws IOException {
+        writeObject(obj, null);
+    }
+
+    /**
+     * Writes only the fields of projection of obj, null for all.
+     */
+    void writeObject(Object obj, JSunProjection projection) throws IOException {
+        JSunPlan plan = JSunProjection.plan(obj.getClass(), projection);
+        JSunPlan.Property[] properties = plan.properties;
+        writeSimple(INDEFINITE_MAP);
+        for (int i = 0; i < properties.length; i++) {
+            JSunPlan.Property property = properties[i];
+            long bits = 0;
+            Object value = null;
+            try {
+                if (property.kind == JSun.KeyValuePair.OBJECT) value = property.get(obj);
+                else bits = property.bits(obj);
+            } catch (Exception ex) {
+                // Left out, as JSun(Object) does.
+                ex.printStackTrace();
+                continue;
+            }
+            writeRaw(property.encodedKey.cbor);
+            switch (property.kind) {
+                case JSun.KeyValuePair.INT:
+                case JSun.KeyValuePair.LONG:
+                    writeLong(bits);
+                    break;
+                case JSun.KeyValuePair.DOUBLE:
+                    writeDouble(Double.longBitsToDouble(bits));
+                    break;
+                case JSun.KeyValuePair.BOOLEAN:
+                    writeSimple(bits != 0 ? TRUE : FALSE);
+                    break;
+                default:
+                    if (value instanceof List<?>) writeList((List<?>) value, plan.projection(i));
+                    else writeValue(value);
+            }
+        }
+        writeSimple(BREAK);
+    }
+
+    private void writeList(List<?> list, JSunProjection projection) throws IOException {
+        head(ARRAY, list.size());
+        if (list instanceof RandomAccess) {
+            for (int i = 0, n = list.size(); i < n; i++) writeElement(list.get(i), projection);
+        } else {
+            for (Object o : list) writeElement(o, projection);
+        }
+    }
+
+    /**
+     * Writes o as JSun.JsonArray.element(o) would be written.
+     */
+    void writeElement(Object o, JSunProjection projection) throws IOException {
+        if (o == null || o instanceof String || o instanceof JSun || o instanceof Number
+                || o instanceof Boolean || o instanceof Character || JSun.JsonArray.isPrimitiveArray(o)) {
+            writeValue(o);
+        } else {
+            writeObject(o, projection);
+        }
+    }
+
+    void writeLong(long v) throws IOException {
+        if (v >= 0) head(UNSIGNED, v);
+        else head(NEGATIVE, ~v);
+    }
+
+    void writeDouble(double v) throws IOException {
+        float f = (float) v;
+        if (f == v && (Float.isInfinite(f) || fewDigits(v))) {
+            writeFloat(f);
+            return;
+        }
+        require(9);
+        buf[pos++] = (byte) DOUBLE;
+        long bits = Double.doubleToRawLongBits(v);
+        for (int shift = 56; shift >= 0; shift -= 8) buf[pos++] = (byte) (bits >>> shift);
+    }
+
+    /**
+     * True if the shortest Json of v has at most 6 significant digits.<br>
+     * CborReader reads a single precision value as Float.toString() prints it,
+     * the shortest decimal that reads back as the float. For a float that holds v
+     * exactly, that is the Json of v only when v has so few digits, a double like
+     * (double) 0.1f needs 17 and is written as a double.
+     */
+    private boolean fewDigits(double v) {
+        char[] d = digits;
+        int end = DoubleFormat.format(v, d);
+        int count = 0, zeros = 0;
+        for (int i = 0; i < end && d[i] != 'E'; i++) {
+            char c = d[i];
+            if (c < '0' || c > '9') continue;
+            if (c == '0') {
+                // Leading zeros do not count, trailing ones only once followed by a digit.
+                if (count > 0) zeros++;
+            } else {
+                count += zeros + 1;
+                zeros = 0;
+            }
+        }
+        return count <= 6;
+    }
+
+    void writeFloat(float v) throws IOException {
+        require(5);
+        buf[pos++] = (byte) FLOAT;
+        int bits = Float.floatToRawIntBits(v);
+        for (int shift = 24; shift >= 0; shift -= 8) buf[pos++] = (byte) (bits >>> shift);
+    }
+
+    private void writeBigInteger(BigInteger v) throws IOException {
+        if (v.bitLength() < 64) {
+            writeLong(v.longValue());
+            return;
+        }
+        boolean negative = v.signum() < 0;
+        byte[] magnitude = (negative ? v.not() : v).toByteArray();
+        int off = magnitude[0] == 0 ? 1 : 0;
+        head(TAG, negative ? NEGATIVE_BIGNUM : POSITIVE_BIGNUM);
+        head(BYTES, magnitude.length - off);
+        require(magnitude.length - off);
+        System.arraycopy(magnitude, off, buf, pos, magnitude.length - off);
+        pos += magnitude.length - off;
+    }
+
+    /**
+     * Writes s as a UTF-8 text string, lone surrogates become '?' as in Utf8Writer.
+     */
+    void writeText(String s) throws IOException {
+        int length = s.length();
+        int bytes = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+                continue;
+            }
+            ascii = false;
+            if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        head(TEXT, bytes);
+        require(bytes);
+        byte[] b = buf;
+        int p = pos;
+        if (ascii) {
+            for (int i = 0; i < length; i++) b[p++] = (byte) s.charAt(i);
+        } else {
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    p = Utf8Writer.encode(Character.toCodePoint(c, s.charAt(++i)), b, p);
+                } else {
+                    p = Utf8Writer.encode(c, b, p);
+                }
+            }
+        }
+        pos = p;
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        require(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void writeSimple(int b) throws IOException {
+        if (pos == buf.length) require(1);
+        buf[pos++] = (byte) b;
+    }
+
+    /**
+     * Writes a major type with its argument in the fewest bytes.
+     */
+    private void head(int major, long v) throws IOException {
+        require(9);
+        int m = major << 5;
+        if (v < 24) {
+            buf[pos++] = (byte) (m | v);
+        } else if (v < 0x100) {
+            buf[pos++] = (byte) (m | 24);
+            buf[pos++] = (byte) v;
+        } else if (v < 0x10000) {
+            buf[pos++] = (byte) (m | 25);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        } else if (v < 0x100000000L) {
+            buf[pos++] = (byte) (m | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) buf[pos++] = (byte) (v >>> shift);
+        } else {
+            buf[pos++] = (byte) (m | 27);
+            for (int shift = 56; shift >= 0; shift -= 8) buf[pos++] = (byte) (v >>> shift);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads and writes one ResultSet column, chosen once per result set by SQL type.<br>
+ * Numeric and boolean columns are read by index with the primitive getters
+ * and written without boxing. Date and time columns are written as ISO-8601 strings.
+ * @author Fredrik Roos 2023
+ */
+abstract class ColumnEncoder {
+
+    final int column;
+    final String name;
+    final EncodedKey encodedKey;
+
+    ColumnEncoder(int column, String name) {
+        this.column = column;
+        this.name = name;
+        this.encodedKey = EncodedKey.of(name);
+    }
+
+    /**
+     * Writes the value of the column in the current row.
+     */
+    abstract void write(ResultSet rs, JSunWriter out) throws SQLException, IOException;
+
+    /**
+     * Reads the value of the column in the current row.
+     */
+    abstract Object read(ResultSet rs) throws SQLException;
+
+    /**
+     * Reads the value of the column in the current row into cell of batch.
+     */
+    void fetch(ResultSet rs, ResultPipeline.Batch batch, int cell) throws SQLException {
+        batch.values[cell] = read(rs);
+    }
+
+    /**
+     * Writes the value fetch() put in cell of batch, as write(ResultSet, JSunWriter) does.
+     */
+    void write(ResultPipeline.Batch batch, int cell, JSunWriter out) throws IOException {
+        out.writeValue(JSun.JsonArray.element(batch.values[cell]));
+    }
+
+    /**
+     * Creates one encoder per column of meta.
+     * @param meta ResultSetMetaData
+     * @param uniqueNames true if column names are used as Json keys.
+     * @return encoders in column order.
+     * @throws SQLException if meta fails.
+     */
+    static ColumnEncoder[] forColumns(ResultSetMetaData meta, boolean uniqueNames) throws SQLException {
+        return forColumns(meta, uniqueNames, null);
+    }
+
+    /**
+     * Creates one encoder per column of meta selected by projection, so
+     * the other columns are never read.
+     * @param meta ResultSetMetaData
+     * @param uniqueNames true if column names are used as Json keys.
+     * @param projection columns to read by label, null for all of them.
+     * @return encoders in column order.
+     * @throws SQLException if meta fails.
+     */
+    static ColumnEncoder[] forColumns(ResultSetMetaData meta, boolean uniqueNames, JSunProjection projection) throws SQLException {
+        int count = meta.getColumnCount();
+        List<ColumnEncoder> encoders = new ArrayList<>(count);
+        Set<String> names = uniqueNames ? new HashSet<>() : null;
+        for (int i = 1; i <= count; i++) {
+            String name = meta.getColumnLabel(i);
+            if (projection != null && !projection.includes(name.toLowerCase(Locale.ROOT))) continue;
+            if (names != null && !names.add(name)) throw new RuntimeException("Duplicate key '" + name + "'.");
+            encoders.add(forType(meta.getColumnType(i), i, name));
+        }
+        return encoders.toArray(new ColumnEncoder[0]);
+    }
+
+    private static ColumnEncoder forType(int sqlType, int column, String name) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return new LongColumn(column, name);
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumn(column, name);
+            case Types.REAL:
+                return new FloatColumn(column, name);
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return new BooleanColumn(column, name);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new DecimalColumn(column, name);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return new StringColumn(column, name);
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return new TemporalColumn(sqlType, column, name);
+            default:
+                return new ObjectColumn(column, name);
+        }
+    }
+
+    static final class LongColumn extends ColumnEncoder {
+        LongColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            long v = rs.getLong(column);
+            if (rs.wasNull()) out.write("null");
+            else out.writeLong(v);
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            long v = rs.getLong(column);
+            if (rs.wasNull()) return null;
+            return v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE ? (Object) (int) v : (Object) v;
+        }
+
+        @Override
+        void fetch(ResultSet rs, ResultPipeline.Batch batch, int cell) throws SQLException {
+            batch.bits[cell] = rs.getLong(column);
+            batch.nulls[cell] = rs.wasNull();
+        }
+
+        @Override
+        void write(ResultPipeline.Batch batch, int cell, JSunWriter out) throws IOException {
+            if (batch.nulls[cell]) out.write("null");
+            else out.writeLong(batch.bits[cell]);
+        }
+    }
+
+    static final class DoubleColumn extends ColumnEncoder {
+        DoubleColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            double v = rs.getDouble(column);
+            if (rs.wasNull()) out.write("null");
+            else out.writeDouble(v);
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            double v = rs.getDouble(column);
+            return rs.wasNull() ? null : (Object) v;
+        }
+
+        @Override
+        void fetch(ResultSet rs, ResultPipeline.Batch batch, int cell) throws SQLException {
+            batch.bits[cell] = Double.doubleToRawLongBits(rs.getDouble(column));
+            batch.nulls[cell] = rs.wasNull();
+        }
+
+        @Override
+        void write(ResultPipeline.Batch batch, int cell, JSunWriter out) throws IOException {
+            if (batch.nulls[cell]) out.write("null");
+            else out.writeDouble(Double.longBitsToDouble(batch.bits[cell]));
+        }
+    }
+
+    static final class FloatColumn extends ColumnEncoder {
+        FloatColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            float v = rs.getFloat(column);
+            if (rs.wasNull() || Float.isNaN(v) || Float.isInfinite(v)) out.write("null");
+            else out.write(Float.toString(v));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            float v = rs.getFloat(column);
+            return rs.wasNull() ? null : (Object) v;
+        }
+
+        @Override
+        void fetch(ResultSet rs, ResultPipeline.Batch batch, int cell) throws SQLException {
+            batch.bits[cell] = Float.floatToRawIntBits(rs.getFloat(column));
+            batch.nulls[cell] = rs.wasNull();
+        }
+
+        @Override
+        void write(ResultPipeline.Batch batch, int cell, JSunWriter out) throws IOException {
+            float v = Float.intBitsToFloat((int) batch.bits[cell]);
+            if (batch.nulls[cell] || Float.isNaN(v) || Float.isInfinite(v)) out.write("null");
+            else out.write(Float.toString(v));
+        }
+    }
+
+    static final class BooleanColumn extends ColumnEncoder {
+        BooleanColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            boolean v = rs.getBoolean(column);
+            if (rs.wasNull()) out.write("null");
+            else out.writeBoolean(v);
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            boolean v = rs.getBoolean(column);
+            return rs.wasNull() ? null : (Object) v;
+        }
+
+        @Override
+        void fetch(ResultSet rs, ResultPipeline.Batch batch, int cell) throws SQLException {
+            batch.bits[cell] = rs.getBoolean(column) ? 1 : 0;
+            batch.nulls[cell] = rs.wasNull();
+        }
+
+        @Override
+        void write(ResultPipeline.Batch batch, int cell, JSunWriter out) throws IOException {
+            if (batch.nulls[cell]) out.write("null");
+            else out.writeBoolean(batch.bits[cell] != 0);
+        }
+    }
+
+    static final class DecimalColumn extends ColumnEncoder {
+        DecimalColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            BigDecimal v = rs.getBigDecimal(column);
+            out.write(v == null ? "null" : v.toString());
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getBigDecimal(column);
+        }
+    }
+
+    static final class StringColumn extends ColumnEncoder {
+        StringColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            String v = rs.getString(column);
+            if (v == null) out.write("null");
+            else out.writeString(v);
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getString(column);
+        }
+    }
+
+    /**
+     * DATE as 2023-05-17, TIME as 10:11:12 and TIMESTAMP as the instant, 2023-05-17T08:11:12.500Z.
+     * The zoned types are written as the driver's object prints, an OffsetTime or OffsetDateTime.
+     */
+    static final class TemporalColumn extends ColumnEncoder {
+        private final int sqlType;
+
+        TemporalColumn(int sqlType, int column, String name) {
+            super(column, name);
+            this.sqlType = sqlType;
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            String v = read(rs);
+            if (v == null) out.write("null");
+            else out.writeString(v);
+        }
+
+        @Override
+        String read(ResultSet rs) throws SQLException {
+            switch (sqlType) {
+                case Types.DATE: {
+                    Date v = rs.getDate(column);
+                    return v == null ? null : v.toString();
+                }
+                case Types.TIME: {
+                    Time v = rs.getTime(column);
+                    return v == null ? null : v.toString();
+                }
+                case Types.TIMESTAMP: {
+                    Timestamp v = rs.getTimestamp(column);
+                    return v == null ? null : v.toInstant().toString();
+                }
+                default: {
+                    Object v = rs.getObject(column);
+                    return v == null ? null : v.toString();
+                }
+            }
+        }
+    }
+
+    static final class ObjectColumn extends ColumnEncoder {
+        ObjectColumn(int column, String name) {
+            super(column, name);
+        }
+
+        @Override
+        void write(ResultSet rs, JSunWriter out) throws SQLException, IOException {
+            out.writeValue(JSun.JsonArray.element(rs.getObject(column)));
+        }
+
+        @Override
+        Object read(ResultSet rs) throws SQLException {
+            return rs.getObject(column);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.math.BigInteger;
+
+/**
+ * Shortest round trip formatting of doubles, after Giulietti's Schubfach.<br>
+ * Writes the fewest digits that parse back to the same double, laid out like
+ * Double.toString() (1.0, 0.001, 1.0E7, 4.9E-324), straight into a char buffer.
+ * @author Fredrik Roos 2023
+ */
+final class DoubleFormat {
+
+    /**
+     * Longest output, e.i -2.2250738585072014E-308.
+     */
+    static final int MAX_CHARS = 24;
+
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // 10^-k as g1 2^63 + g0, scaled to [2^125, 2^126) and rounded up, for k in [K_MIN, K_MAX].
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int shift = 125 - flog2pow10(-k);
+            BigInteger g;
+            if (k <= 0) {
+                BigInteger pow = BigInteger.TEN.pow(-k);
+                g = shift >= 0 ? pow.shiftLeft(shift) : pow.shiftRight(-shift);
+            } else {
+                g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+            }
+            g = g.add(BigInteger.ONE);
+            int i = 2 * (k - K_MIN);
+            G[i] = g.shiftRight(63).longValue();
+            G[i + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    private DoubleFormat() {
+    }
+
+    /**
+     * Writes v into buf from 0.
+     * @param v finite double
+     * @param buf at least MAX_CHARS long
+     * @return number of chars written.
+     */
+    static int format(double v, char[] buf) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & (C_MIN - 1);
+        int bq = (int) (bits >>> (P - 1)) & 0x7FF;
+        int pos = 0;
+        if (bits < 0) buf[pos++] = '-';
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) return layout(f, 0, buf, pos);
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        }
+        if (t != 0) {
+            return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, buf, pos) : toDecimal(Q_MIN, t, 0, buf, pos);
+        }
+        buf[pos++] = '0';
+        buf[pos++] = '.';
+        buf[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * Finds the shortest decimal in the rounding interval of c 2^q.
+     */
+    private static int toDecimal(int q, long c, int dk, char[] buf, int pos) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN | q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        int i = 2 * (k - K_MIN);
+        long g1 = G[i];
+        long g0 = G[i + 1];
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) return layout(upin ? sp10 : tp10, k, buf, pos);
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) return layout(uin ? s : t, k + dk, buf, pos);
+        long cmp = vb - (s + t << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    /**
+     * Writes f 10^e like Double.toString(), plain for 10^-3 <= v < 10^7, else as d.dddEn.
+     */
+    private static int layout(long f, int e, char[] buf, int pos) {
+        // Digits of f right aligned in buf, trailing zeros dropped.
+        int end = buf.length;
+        int start = end;
+        boolean trailing = true;
+        while (f != 0) {
+            long q = f / 10;
+            int d = (int) (f - q * 10);
+            f = q;
+            if (trailing && d == 0) {
+                e++;
+                continue;
+            }
+            trailing = false;
+            buf[--start] = (char) ('0' + d);
+        }
+        int n = end - start;
+        // Value is 0.digits 10^exp
+        int exp = e + n;
+        if (0 < exp && exp <= 7) {
+            int intDigits = Math.min(n, exp);
+            pos = copy(buf, start, intDigits, pos);
+            for (int i = n; i < exp; i++) buf[pos++] = '0';
+            buf[pos++] = '.';
+            if (n > exp) pos = copy(buf, start + exp, n - exp, pos);
+            else buf[pos++] = '0';
+        } else if (-3 < exp && exp <= 0) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int i = exp; i < 0; i++) buf[pos++] = '0';
+            pos = copy(buf, start, n, pos);
+        } else {
+            buf[pos++] = buf[start];
+            buf[pos++] = '.';
+            if (n > 1) pos = copy(buf, start + 1, n - 1, pos);
+            else buf[pos++] = '0';
+            buf[pos++] = 'E';
+            int x = exp - 1;
+            if (x < 0) {
+                buf[pos++] = '-';
+                x = -x;
+            }
+            if (x >= 100) buf[pos++] = (char) ('0' + x / 100);
+            if (x >= 10) buf[pos++] = (char) ('0' + x / 10 % 10);
+            buf[pos++] = (char) ('0' + x % 10);
+        }
+        return pos;
+    }
+
+    /**
+     * Moves len digits from the right aligned scratch to pos, which is always to the left of it.
+     */
+    private static int copy(char[] buf, int from, int len, int pos) {
+        System.arraycopy(buf, from, buf, pos, len);
+        return pos + len;
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * High 64 bits of the 128 bit product x y, Math.multiplyHigh() is Java 9.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    // floor(log10(2^q))
+    private static int flog10pow2(int q) {
+        return (int) (q * 661_971_961_083L >> 41);
+    }
+
+    // floor(log10(3/4 2^q))
+    private static int flog10threeQuartersPow2(int q) {
+        return (int) (q * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    // floor(log2(10^e))
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
@@ -0,0 +1,47 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Json key encoded once as "name": in both chars and UTF-8 bytes,
+ * and as a CBOR text string, so writers can copy it instead of encoding the name again.
+ * @author Fredrik Roos 2023
+ */
+final class EncodedKey {
+
+    final String chars;
+    final byte[] bytes;
+    final byte[] cbor;
+
+    private EncodedKey(String name) {
+        this.chars = JSunWriter.quote(name) + ":";
+        this.bytes = chars.getBytes(StandardCharsets.UTF_8);
+        this.cbor = CborWriter.text(name);
+    }
+
+    /**
+     * Encodes name as a Json key, e.i "name":
+     * @param name key name
+     * @return encoded key
+     */
+    static EncodedKey of(String name) {
+        return new EncodedKey(name);
+    }
+}
@@ -1,47 +1,207 @@
 package com.crazedout.jsun;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
 
+/**
+ * Renders results as HTML tables, drawn in the browser by the table.js template.<br>
+ * The rows are written as Json array literals in &lt;script&gt; chunks of CHUNK_ROWS rows,
+ * each flushed when written, so the browser draws the first rows while the rest
+ * are still on their way and the page is never held in memory.
+ * <pre>
+ *     <code>
+ *         JSFactory.toHTMLTable(con.createStatement().executeQuery("select * from person"), response.getWriter());
+ *     </code>
+ * </pre>
+ * @author Fredrik Roos 2023
+ */
 public class JSFactory {
 
-    private static JSFactory instance;
+    /**
+     * Rows per &lt;script&gt; chunk.
+     */
+    public static final int CHUNK_ROWS = 1000;
 
     private JSFactory(){
     }
 
-    private static JSFactory getInstance(){
-        if(instance==null){
-            instance = new JSFactory();
-        }
-        return instance;
+    /**
+     * The template, loaded once on first use.
+     */
+    private static final class Templates {
+        static final String TABLE = loadTemplate("table.js");
     }
 
-    private String loadTemplate(String template){
+    private static String loadTemplate(String template){
+        InputStream is = JSFactory.class.getClassLoader().getResourceAsStream(template);
+        if (is == null) throw new RuntimeException("Template '" + template + "' not found.");
         StringBuilder sb = new StringBuilder();
-        try {
-            InputStream is = getClass().getClassLoader().getResourceAsStream("/" + template);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line + "\n");
-            }
-            reader.close();
-        }catch(IOException ex){
-            ex.printStackTrace();
+        try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            char[] buf = new char[4096];
+            int n;
+            while ((n = reader.read(buf)) != -1) sb.append(buf, 0, n);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
         }
         return sb.toString();
     }
 
+    /**
+     * Gets the page for res as one String.
+     * @param res result to render.
+     * @return &lt;script&gt; elements drawing res as a table.
+     * @see #toHTMLTable(JSunResult, Writer)
+     */
     public static String toHTMTable(JSunResult res) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<script>\n");
-        sb.append("var json = JSON.parse('" + res + "');\n");
-        sb.append(getInstance().loadTemplate("table.js"));
-        sb.append("\n</script>");
-        return sb.toString();
+        StringWriter out = new StringWriter();
+        try {
+            toHTMLTable(res, out);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes &lt;script&gt; elements drawing res as a table where they are placed.
+     * @param res result to render.
+     * @param out Writer, flushed after every chunk but not closed.
+     * @throws IOException if out fails.
+     */
+    public static void toHTMLTable(JSunResult res, Writer out) throws IOException {
+        JSunWriter writer = writeHead(out);
+        List<JSun> rows = res.getResultList();
+        for (int i = 0; i < rows.size(); i++) {
+            int inChunk = i % CHUNK_ROWS;
+            if (inChunk == 0) out.write("<script>jsunTable([");
+            else writer.write(',');
+            writer.writeValue(rows.get(i));
+            if (inChunk == CHUNK_ROWS - 1 || i == rows.size() - 1) endChunk(out);
+        }
+        out.flush();
     }
 
+    /**
+     * Writes &lt;script&gt; elements drawing the rows left in rs, as {"column":value,...},
+     * as a table where they are placed, a chunk at a time as the rows are read.<br>
+     * rs is closed when done.
+     * @param rs ResultSet
+     * @param out Writer, flushed after every chunk but not closed.
+     * @return number of rows written.
+     * @throws SQLException if reading rs fails.
+     * @throws IOException if out fails.
+     */
+    public static long toHTMLTable(ResultSet rs, Writer out) throws SQLException, IOException {
+        try {
+            ColumnEncoder[] columns = ColumnEncoder.forColumns(rs.getMetaData(), true);
+            JSunResultWriter rowWriter = new JSunResultWriter();
+            rowWriter.setRowsAsObjects(true);
+            JSunWriter writer = writeHead(out);
+            long rows = 0;
+            int inChunk = 0;
+            while (rs.next()) {
+                if (inChunk == 0) out.write("<script>jsunTable([");
+                else writer.write(',');
+                rowWriter.writeRow(rs, columns, writer);
+                rows++;
+                if (++inChunk == CHUNK_ROWS) {
+                    endChunk(out);
+                    inChunk = 0;
+                }
+            }
+            if (inChunk > 0) endChunk(out);
+            out.flush();
+            return rows;
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Writes the template and gets a writer for rows that is safe inside a script.
+     */
+    private static JSunWriter writeHead(Writer out) throws IOException {
+        out.write("<script>\n");
+        out.write(Templates.TABLE);
+        out.write("</script>\n");
+        out.flush();
+        return new JSunWriter.WriterWriter(new ScriptData(out));
+    }
+
+    private static void endChunk(Writer out) throws IOException {
+        out.write("]);</script>\n");
+        out.flush();
+    }
+
+    /**
+     * Json as a script literal: '<' is escaped so no string can close the script
+     * or open a comment, and the line and paragraph separators are escaped since
+     * older JavaScript does not allow them in strings. Both occur only inside Json strings.
+     */
+    private static final class ScriptData extends Writer {
+        private static final char LINE_SEPARATOR = (char) 0x2028;
+        private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+
+        private final Writer out;
+
+        ScriptData(Writer out) {
+            this.out = out;
+        }
+
+        private static boolean unsafe(char c) {
+            return c == '<' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+        }
+
+        private void escape(char c) throws IOException {
+            out.write(c == '<' ? "\\u003c" : c == LINE_SEPARATOR ? "\\u2028" : "\\u2029");
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (unsafe((char) c)) escape((char) c);
+            else out.write(c);
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            int run = off;
+            for (int i = off; i < off + len; i++) {
+                if (!unsafe(buf[i])) continue;
+                out.write(buf, run, i - run);
+                escape(buf[i]);
+                run = i + 1;
+            }
+            out.write(buf, run, off + len - run);
+        }
+
+        @Override
+        public void write(String s, int off, int len) throws IOException {
+            int run = off;
+            for (int i = off; i < off + len; i++) {
+                if (!unsafe(s.charAt(i))) continue;
+                out.write(s, run, i - run);
+                escape(s.charAt(i));
+                run = i + 1;
+            }
+            out.write(s, run, off + len - run);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
 }
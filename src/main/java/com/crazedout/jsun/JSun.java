@@ -18,14 +18,25 @@
 package com.crazedout.jsun;
 
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Helper class to serialize objects to Json object / string.<br>
@@ -62,39 +73,157 @@ import java.util.List;
  */
 public class JSun {
 
-    private final List<KeyValuePair> keyPairList = new LinkedList<>();
-    private List<String> excludeList;
-    private final ScriptEngineManager factory = new ScriptEngineManager();
-    private final ScriptEngine engine = factory.getEngineByName("JavaScript");
-    private static final String ARRAY_TAG = "<JSON_ARRAY>";
+    private final KeyValueList keyPairList = new KeyValueList();
+    static final String ARRAY_TAG = "<JSON_ARRAY>";
+
+    // Stamps top level renders, so caches can tell what changed after them.
+    private static final AtomicLong RENDERS = new AtomicLong();
+    private Rendered rendered;
+    private long lastRender;
+
+    /**
+     * Json of a JSun as rendered under stamp, nested if kept for a JSun written inside another.
+     */
+    private static final class Rendered {
+        final String json;
+        final long stamp;
+        final boolean nested;
+        boolean validated;
+
+        Rendered(String json, long stamp, boolean nested) {
+            this.json = json;
+            this.stamp = stamp;
+            this.nested = nested;
+        }
+    }
 
     public static class KeyValuePair {
+        static final byte OBJECT = 0;
+        static final byte INT = 1;
+        static final byte LONG = 2;
+        static final byte DOUBLE = 3;
+        static final byte BOOLEAN = 4;
+
         String name;
         Object value;
+        EncodedKey encodedKey;
+        // Primitive values are kept unboxed in bits, doubles as raw long bits and booleans as 0 or 1.
+        byte kind;
+        long bits;
 
         KeyValuePair(String name, Object value) {
             this.name = name;
             this.value = value;
         }
+
+        KeyValuePair(String name, Object value, EncodedKey encodedKey) {
+            this(name, value);
+            this.encodedKey = encodedKey;
+        }
+
+        KeyValuePair(String name, byte kind, long bits, EncodedKey encodedKey) {
+            this.name = name;
+            this.kind = kind;
+            this.bits = bits;
+            this.encodedKey = encodedKey;
+        }
+
+        /**
+         * @return Json key
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return value, a JSun, a List, a primitive array or a scalar.
+         */
+        public Object getValue() {
+            switch (kind) {
+                case INT:
+                    return (int) bits;
+                case LONG:
+                    return bits;
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                case BOOLEAN:
+                    return bits != 0;
+                default:
+                    return JsonArray.unwrap(value);
+            }
+        }
     }
 
-    private static class JsonArray {
-        List<Object> arrList = new LinkedList<>();
+    static class JsonArray {
+        List<Object> arrList;
 
         JsonArray(Object... obj) {
-            //arrList.addAll(Arrays.asList(obj));
+            this(null, obj);
+        }
+
+        /**
+         * @param projection what to write of the objects in obj, null for all of them.
+         */
+        JsonArray(JSunProjection projection, Object[] obj) {
+            if(JSunParallel.isParallel(obj.length)){
+                arrList = new ArrayList<>(Arrays.asList(JSunParallel.elements(obj, projection)));
+                return;
+            }
+            arrList = new ArrayList<>(obj.length);
             for(Object o:obj){
-                if(!(o instanceof String)
-                        && !(o instanceof JSun)
-                        && !(o instanceof Float)
-                        && !(o instanceof Double)
-                        && !(o instanceof Integer)){
-                    arrList.add(new JSun(o));
-                }else{
-                    arrList.add(o);
-                }
+                arrList.add(element(o, projection));
+            }
+        }
+
+        private JsonArray(List<Object> arrList) {
+            this.arrList = arrList;
+        }
+
+        /**
+         * Wraps items, which are already Json array elements.
+         */
+        static JsonArray wrap(List<Object> items) {
+            return new JsonArray(items);
+        }
+
+        /**
+         * A JsonArray as a read only List, anything else as is.
+         */
+        static Object unwrap(Object value) {
+            if (value instanceof JsonArray) return Collections.unmodifiableList(((JsonArray) value).arrList);
+            return value;
+        }
+
+        /**
+         * Json scalars and primitive arrays are kept as is, other objects become a JSun.
+         */
+        static Object element(Object o) {
+            return element(o, null);
+        }
+
+        /**
+         * As element(o), with projection applied if o becomes a JSun.
+         */
+        static Object element(Object o, JSunProjection projection) {
+            if(o==null
+                    || o instanceof String
+                    || o instanceof JSun
+                    || o instanceof Number
+                    || o instanceof Boolean
+                    || o instanceof Character
+                    || isPrimitiveArray(o)){
+                return o;
             }
+            return new JSun(o, projection);
         }
+
+        /**
+         * The primitive arrays JSunWriter writes in a loop of their own.
+         */
+        static boolean isPrimitiveArray(Object o) {
+            return o instanceof int[] || o instanceof long[] || o instanceof double[] || o instanceof boolean[];
+        }
+
         @Override
         public String toString(){
             StringBuilder sb = new StringBuilder();
@@ -127,6 +256,16 @@ public class JSun {
         put(list);
     }
 
+    /**
+     * Creates a JSun array of list, writing only the fields of projection of its objects.
+     * @param list list to be jsonifed.
+     * @param projection fields to write of each object in list.
+     */
+    public JSun(List<?> list, JSunProjection projection){
+        if(projection==null) throw new RuntimeException("Projection must not be null.");
+        put(ARRAY_TAG, new JsonArray(projection, list.toArray()));
+    }
+
     /**
      * Creates a JSun with initial key/[list].
      *
@@ -157,10 +296,200 @@ public class JSun {
      */
     public JSun(Object obj) {
         if(obj==null) throw new RuntimeException("Object must not be null.");
-        if (obj.getClass().getAnnotation(JSunClass.class) != null) {
-            excludeList = Arrays.asList(obj.getClass().getAnnotation(JSunClass.class).exclude());
-        }
-        this.recurseObject(obj);
+        this.recurseObject(obj, null);
+    }
+
+    /**
+     * Creates a JSun for obj, with only the fields of projection.<br>
+     * Getters of other fields are not called.
+     * <pre>
+     *     <code>
+     *         JSun json = new JSun(album, JSunProjection.of("title", "musicians.name"));
+     *     </code>
+     * </pre>
+     * @param obj Object to be Json serialized.
+     * @param projection fields to write, null for all.
+     */
+    public JSun(Object obj, JSunProjection projection) {
+        if(obj==null) throw new RuntimeException("Object must not be null.");
+        this.recurseObject(obj, projection);
+    }
+
+    /**
+     * Parses a Json object or array.<br>
+     * Objects become JSun, arrays become Lists and numbers become Integer, Long,
+     * BigInteger or Double, the smallest that holds the value.
+     * <pre>
+     *     <code>
+     *         JSun js = JSun.parse("{\"id\":4,\"names\":[\"John\",\"Paul\"]}");
+     *         Object id = js.get("id");        <i>4</i>
+     *         Object names = js.get("names");  <i>[John, Paul]</i>
+     *     </code>
+     * </pre>
+     * @param json Json string
+     * @return JSun
+     * @throws RuntimeException if json is not a valid Json object or array.
+     */
+    public static JSun parse(CharSequence json) {
+        return new JSunParser(json.toString()).parseDocument();
+    }
+
+    /**
+     * Parses a Json object or array read from reader, which is not closed.
+     * @param reader Reader
+     * @return JSun
+     * @throws IOException if reader fails.
+     */
+    public static JSun parse(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int n;
+        while ((n = reader.read(buf)) != -1) sb.append(buf, 0, n);
+        return parse(sb);
+    }
+
+    /**
+     * Parses a UTF-8 encoded Json object or array.
+     * @param json Json bytes
+     * @return JSun
+     */
+    public static JSun parse(byte[] json) {
+        return parse(new String(json, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Streams the elements of a Json array file, such as one written from
+     * new JSun(list) or a JSunResult, one JSun per element.<br>
+     * The file is memory mapped, not read, so the heap holds only the elements
+     * in flight, whatever the size of the file. parallel() splits the array at
+     * element boundaries, after one structural pass over the file, and parses
+     * the parts on all cores. Elements must be objects or arrays.
+     * <pre>
+     *     <code>
+     *         try (Stream&lt;JSun&gt; rows = JSun.streamArray(Paths.get("rows.json"))) {
+     *             long active = rows.parallel().filter(row -&gt; Boolean.TRUE.equals(row.get("active"))).count();
+     *         }
+     *     </code>
+     * </pre>
+     * The file must not change while it is streamed.
+     * @param path file holding one Json array, UTF-8 encoded.
+     * @return sequential Stream of the elements.
+     * @throws IOException if path cannot be mapped.
+     * @throws RuntimeException if the file is not a Json array, or while streaming if an element is invalid.
+     */
+    public static Stream<JSun> streamArray(Path path) throws IOException {
+        return StreamSupport.stream(JSunArraySpliterator.open(path), false);
+    }
+
+    /**
+     * Indexes a Json object or array for lazy access by path, without building it.<br>
+     * Use it to read a few values out of a large document.
+     * <pre>
+     *     <code>
+     *         JSunIndex index = JSun.index("{\"band\":{\"members\":[{\"name\":\"John\"}]}}");
+     *         String name = index.getString("band.members[0].name");   <i>John</i>
+     *     </code>
+     * </pre>
+     * @param json Json string
+     * @return JSunIndex
+     * @throws RuntimeException if json is not a valid Json object or array.
+     */
+    public static JSunIndex index(CharSequence json) {
+        return new JSunIndex(json.toString());
+    }
+
+    /**
+     * Indexes a UTF-8 encoded Json object or array, as index(CharSequence) does.<br>
+     * Only the values that are read are decoded to Strings.
+     * @param json Json bytes, not copied, so they must not change while the index is used.
+     * @return JSunIndex
+     */
+    public static JSunIndex index(byte[] json) {
+        return new JSunIndex(json);
+    }
+
+    /**
+     * Binds a Json object to a new instance of type, the reverse of JSun(Object).<br>
+     * Keys are matched to setters, setName(..) takes "name", or if type has no
+     * no-args constructor to the parameter names of its largest constructor
+     * (compile with -parameters). @JSunClass excludes apply, unknown keys are skipped.
+     * Nested objects, Lists, enums, Strings, numbers and booleans are bound by type.
+     * @param json Json object
+     * @param type class to create
+     * @param <T> type
+     * @return the new object
+     * @throws RuntimeException if json does not fit type.
+     */
+    public static <T> T bind(CharSequence json, Class<T> type) {
+        return new JSunBinder(json.toString()).bindDocument(type);
+    }
+
+    /**
+     * Binds a Json array to a List of new instances of type.
+     * @param json Json array
+     * @param type element class
+     * @param <T> type
+     * @return List of new objects
+     * @throws RuntimeException if json does not fit type.
+     */
+    public static <T> List<T> bindList(CharSequence json, Class<T> type) {
+        return new JSunBinder(json.toString()).bindList(type);
+    }
+
+    /**
+     * Parses a CBOR (RFC 8949) map or array, as written by toCbor(), into a JSun.<br>
+     * Values come back as JSun.parse() gives them for the same Json.
+     * Floats become Double, bignums BigInteger and decimal fractions BigDecimal,
+     * other tags are skipped and byte strings are not supported.
+     * @param cbor CBOR bytes
+     * @return JSun
+     * @throws RuntimeException if cbor is not a valid CBOR map or array.
+     */
+    public static JSun parseCbor(byte[] cbor) {
+        return new CborReader(cbor).parseDocument();
+    }
+
+    /**
+     * Binds a CBOR map to a new instance of type, as bind(json, type) does for Json.
+     * @param cbor CBOR map
+     * @param type class to create
+     * @param <T> type
+     * @return the new object
+     * @throws RuntimeException if cbor does not fit type.
+     */
+    public static <T> T bindCbor(byte[] cbor, Class<T> type) {
+        return new CborReader(cbor).bindDocument(type);
+    }
+
+    /**
+     * Binds a CBOR array to a List of new instances of type.
+     * @param cbor CBOR array
+     * @param type element class
+     * @param <T> type
+     * @return List of new objects
+     * @throws RuntimeException if cbor does not fit type.
+     */
+    public static <T> List<T> bindListCbor(byte[] cbor, Class<T> type) {
+        return new CborReader(cbor).bindList(type);
+    }
+
+    /**
+     * Lists and arrays with at least threshold elements are converted and
+     * serialized in parallel chunks on a ForkJoinPool.<br>
+     * The Json is the same as when serialized sequentially.
+     * Default is Integer.MAX_VALUE, e.i never parallel.
+     * @param threshold minimum number of elements.
+     */
+    public static void setParallelThreshold(int threshold) {
+        JSunParallel.setThreshold(threshold);
+    }
+
+    /**
+     * Sets the ForkJoinPool for parallel serialization, null for the common pool (default).
+     * @param pool ForkJoinPool
+     */
+    public static void setForkJoinPool(ForkJoinPool pool) {
+        JSunParallel.setPool(pool);
     }
 
     /**
@@ -183,46 +512,299 @@ public class JSun {
         return new JSun(obj).eval();
     }
 
-    private void recurseObject(Object obj) {
-        List<Method> list = findGetters(obj.getClass());
-        for (Method m : list) {
-            if (m.getName().startsWith("get") && m.getName().length() > 3) {
-                if (excludeList != null && excludeList.contains(m.getName().substring(3).toLowerCase())) continue;
-                try {
-                    String name = m.getName().toLowerCase().substring(3);
-                    Object value = m.invoke(obj);
-                    if (value instanceof List<?>) {
-                        keyPairList.add(new KeyValuePair(name, new JsonArray(((List<?>) value).toArray())));
-                    } else {
-                        keyPairList.add(new KeyValuePair(name, value));
-                    }
-                } catch (Exception ex) {
-                    //throw new RuntimeException(ex.getMessage());
-                    ex.printStackTrace();
+    /**
+     * Writes obj to out as (new JSun(obj).toString()) would, without building the JSun.<br>
+     * The writer, its buffers and the plan of obj's class are reused, so serializing
+     * a bean of getters returning primitives, Strings, Lists and other such beans
+     * into a StringBuilder with room to spare allocates nothing once warm.
+     * <pre>
+     *     <code>
+     *         StringBuilder sb = new StringBuilder(1024);
+     *         for (Person p : persons) {
+     *             sb.setLength(0);
+     *             JSun.serialize(p, sb);
+     *             send(sb);
+     *         }
+     *     </code>
+     * </pre>
+     * A JSun is written as is.
+     * @param obj object to be serialized.
+     * @param out Appendable to write to.
+     * @throws IOException if out fails.
+     */
+    public static void serialize(Object obj, Appendable out) throws IOException {
+        serialize(obj, out, null);
+    }
+
+    /**
+     * Writes the fields of obj selected by projection to out, as
+     * serialize(obj, Appendable) does. Getters outside projection are not called.
+     * A JSun is written as is.
+     * @param obj object to be serialized.
+     * @param out Appendable to write to.
+     * @param projection fields to write, null for all of them.
+     * @throws IOException if out fails.
+     */
+    public static void serialize(Object obj, Appendable out, JSunProjection projection) throws IOException {
+        if(obj==null) throw new RuntimeException("Object must not be null.");
+        if (obj instanceof JSun) {
+            ((JSun) obj).writeTo(out);
+        } else if (out instanceof StringBuilder) {
+            WriterPool pool = WriterPool.get();
+            JSunWriter.StringBuilderWriter writer = pool.chars((StringBuilder) out);
+            try {
+                serialize(obj, writer, projection);
+            } finally {
+                pool.release(writer);
+            }
+        } else if (out instanceof Writer) {
+            JSunWriter writer = new JSunWriter.WriterWriter((Writer) out);
+            serialize(obj, writer, projection);
+            writer.flush();
+        } else {
+            serialize(obj, new JSunWriter.AppendableWriter(out), projection);
+        }
+    }
+
+    /**
+     * Writes obj to out as UTF-8, as serialize(obj, Appendable) does.<br>
+     * out is flushed but not closed.
+     * @param obj object to be serialized.
+     * @param out OutputStream to write to.
+     * @throws IOException if out fails.
+     */
+    public static void serialize(Object obj, OutputStream out) throws IOException {
+        serializeUtf8(obj, out, null, null);
+    }
+
+    /**
+     * Writes the fields of obj selected by projection to out as UTF-8, as
+     * serialize(obj, Appendable, JSunProjection) does.<br>
+     * out is flushed but not closed.
+     * @param obj object to be serialized.
+     * @param out OutputStream to write to.
+     * @param projection fields to write, null for all of them.
+     * @throws IOException if out fails.
+     */
+    public static void serialize(Object obj, OutputStream out, JSunProjection projection) throws IOException {
+        serializeUtf8(obj, out, null, projection);
+    }
+
+    /**
+     * Writes obj into buffer as UTF-8, as serialize(obj, Appendable) does.
+     * @param obj object to be serialized.
+     * @param buffer ByteBuffer to write into, from its position.
+     * @throws java.nio.BufferOverflowException if the Json does not fit.
+     */
+    public static void serialize(Object obj, ByteBuffer buffer) {
+        try {
+            serializeUtf8(obj, null, buffer, null);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+    }
+
+    private static void serializeUtf8(Object obj, OutputStream stream, ByteBuffer target,
+                                      JSunProjection projection) throws IOException {
+        if(obj==null) throw new RuntimeException("Object must not be null.");
+        if (obj instanceof JSun) {
+            ((JSun) obj).writeUtf8(stream, null, target);
+            return;
+        }
+        WriterPool pool = WriterPool.get();
+        Utf8Writer writer = pool.bytes(stream, null, target);
+        try {
+            serialize(obj, writer, projection);
+            writer.flush();
+        } finally {
+            pool.release(writer);
+        }
+    }
+
+    /**
+     * Writes items as Json Lines (NDJSON), one Json document per line, as
+     * new JSun(list) would write each element, without building the array.<br>
+     * out is flushed every flushLines lines and at the end, but not closed, so
+     * a reader can start on the first lines and a failure loses only the tail.
+     * <pre>
+     *     <code>
+     *         JSun.writeNdjson(persons, out, 100);
+     *         <i>{"name":"John","instrument":"Guitar"}
+     *         {"name":"Paul","instrument":"Bass"}</i>
+     *     </code>
+     * </pre>
+     * @param items objects, JSun or scalars to write, a List or any Iterable.
+     * @param out Writer to write to.
+     * @param flushLines lines written between flushes, 0 to flush at the end only.
+     * @return number of lines written.
+     * @throws IOException if out fails.
+     */
+    public static long writeNdjson(Iterable<?> items, Writer out, int flushLines) throws IOException {
+        if (flushLines < 0) throw new RuntimeException("Flush lines may not be negative.");
+        return new JSunWriter.WriterWriter(out).writeLines(items, flushLines);
+    }
+
+    /**
+     * Writes items as Json Lines (NDJSON) to out as UTF-8, as writeNdjson(items, Writer, flushLines) does.
+     * @param items objects, JSun or scalars to write, a List or any Iterable.
+     * @param out OutputStream to write to.
+     * @param flushLines lines written between flushes, 0 to flush at the end only.
+     * @return number of lines written.
+     * @throws IOException if out fails.
+     */
+    public static long writeNdjson(Iterable<?> items, OutputStream out, int flushLines) throws IOException {
+        if (flushLines < 0) throw new RuntimeException("Flush lines may not be negative.");
+        WriterPool pool = WriterPool.get();
+        Utf8Writer writer = pool.bytes(out, null, null);
+        try {
+            return writer.writeLines(items, flushLines);
+        } finally {
+            pool.release(writer);
+        }
+    }
+
+    /**
+     * Writes obj to out as CBOR (RFC 8949), straight from its getters as
+     * serialize(obj, OutputStream) does for Json. A JSun is written as is.<br>
+     * out is flushed but not closed.
+     * @param obj object to be serialized.
+     * @param out OutputStream to write to.
+     * @throws IOException if out fails.
+     */
+    public static void serializeCbor(Object obj, OutputStream out) throws IOException {
+        serializeCbor(obj, out, null);
+    }
+
+    /**
+     * Writes the fields of obj selected by projection to out as CBOR, as
+     * serializeCbor(obj, OutputStream) does. A JSun is written as is.<br>
+     * out is flushed but not closed.
+     * @param obj object to be serialized.
+     * @param out OutputStream to write to.
+     * @param projection fields to write, null for all of them.
+     * @throws IOException if out fails.
+     */
+    public static void serializeCbor(Object obj, OutputStream out, JSunProjection projection) throws IOException {
+        if(obj==null) throw new RuntimeException("Object must not be null.");
+        WriterPool pool = WriterPool.get();
+        CborWriter writer = pool.cbor(out);
+        try {
+            if (obj instanceof JSun) writer.writeJSun((JSun) obj);
+            else writer.writeObject(obj, projection);
+            writer.flush();
+        } finally {
+            pool.release(writer);
+        }
+    }
+
+    private static void serialize(Object obj, JSunWriter writer, JSunProjection projection) throws IOException {
+        if (!JSunMetrics.enabled) {
+            writer.writeObject(obj, projection);
+        } else {
+            long start = System.nanoTime();
+            writer.writeObject(obj, projection);
+            JSunMetrics.serialized(writer.charsWritten(), writer.bytesWritten(), System.nanoTime() - start);
+        }
+    }
+
+    private void recurseObject(Object obj, JSunProjection projection) {
+        JSunPlan plan = JSunProjection.plan(obj.getClass(), projection);
+        if (plan.serializer != null) {
+            plan.serializer.serialize(obj, this);
+            return;
+        }
+        JSunPlan.Property[] properties = plan.properties;
+        for (int i = 0; i < properties.length; i++) {
+            JSunPlan.Property property = properties[i];
+            try {
+                if (property.kind == KeyValuePair.OBJECT) {
+                    add(new KeyValuePair(property.name, toValue(property.get(obj), plan.projection(i)), property.encodedKey));
+                } else {
+                    add(new KeyValuePair(property.name, property.kind, property.bits(obj), property.encodedKey));
                 }
+            } catch (Exception ex) {
+                //throw new RuntimeException(ex.getMessage());
+                ex.printStackTrace();
             }
         }
     }
 
+    /**
+     * Lists are stored as JsonArray, anything else as is.
+     */
+    static Object toValue(Object value) {
+        return toValue(value, null);
+    }
+
+    /**
+     * A List becomes a JsonArray of its elements under projection, anything else is kept.
+     */
+    static Object toValue(Object value, JSunProjection projection) {
+        if (value instanceof List<?>) return new JsonArray(projection, ((List<?>) value).toArray());
+        return value;
+    }
+
+    KeyValuePair find(String key) {
+        return keyPairList.find(key);
+    }
+
+    /**
+     * Adds a pair known to have a unique key.
+     */
+    void add(KeyValuePair pair) {
+        keyPairList.add(pair);
+    }
+
+    /**
+     * Holder for the JavaScript engine factory, loaded on first use of evaluate(String) only.
+     */
+    private static final class ScriptEngineHolder {
+        static final ScriptEngineFactory FACTORY;
+        static {
+            ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+            FACTORY = engine != null ? engine.getFactory() : null;
+        }
+    }
+
     /**
      * Evaluates the input javascript string through<br>
-     * ScriptEngine JavaScript eval().
+     * ScriptEngine JavaScript eval().<br>
+     * Requires a JavaScript ScriptEngine (e.i Rhino) on the classpath.
      * @throws ScriptException if scriptEngine.eval(javascriptString) fails.
      */
     public static void evaluate(String javascriptString) throws ScriptException{
-        (new JSun()).engine.eval(javascriptString);
+        if (ScriptEngineHolder.FACTORY == null) throw new ScriptException("No JavaScript ScriptEngine found.");
+        ScriptEngineHolder.FACTORY.getScriptEngine().eval(javascriptString);
     }
 
     /**
-     * Evaluates the json string of this JSun object through<br>
-     * ScriptEngine JavScript eval() and returns string.
+     * Validates the json string of this JSun object and returns string.
      * @return json string
-     * @throws ScriptException if scriptEngine.eval("JSON.parse('" + toJsonString() +"');") fails.
+     * @throws ScriptException if toJsonString() is not valid json.
      */
     public String evaluate() throws ScriptException {
-        String js = "JSON.parse('" + toJsonString() +"');";
-        engine.eval(js);
-        return toJsonString();
+        String js = toJsonString();
+        Rendered r = rendered;
+        boolean cached = r != null && r.json == js;
+        if (cached && r.validated) return js;
+        validate(js);
+        if (cached) r.validated = true;
+        return js;
+    }
+
+    private static void validate(String js) throws ScriptException {
+        if (!JSunMetrics.enabled) {
+            JSunValidator.validate(js);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean valid = false;
+        try {
+            JSunValidator.validate(js);
+            valid = true;
+        } finally {
+            JSunMetrics.validated(js.length(), System.nanoTime() - start, valid);
+        }
     }
 
     public String eval(){
@@ -242,7 +824,7 @@ public class JSun {
      */
     public void clear(){
         this.keyPairList.clear();
-        if(excludeList!=null) this.excludeList.clear();
+        this.rendered = null;
     }
 
     /**
@@ -267,6 +849,50 @@ public class JSun {
         this.put(key, arr);
     }
 
+    /**
+     * Generates Json string as {"key":[1,2,3...]}.<br>
+     * The array is stored as is, not copied.
+     *
+     * @param key    Json key
+     * @param values Json array
+     */
+    public void put(String key, int[] values) {
+        put(key, (Object) values);
+    }
+
+    /**
+     * Generates Json string as {"key":[1,2,3...]}.<br>
+     * The array is stored as is, not copied.
+     *
+     * @param key    Json key
+     * @param values Json array
+     */
+    public void put(String key, long[] values) {
+        put(key, (Object) values);
+    }
+
+    /**
+     * Generates Json string as {"key":[1.0,2.5...]}, NaN and infinity as null.<br>
+     * The array is stored as is, not copied.
+     *
+     * @param key    Json key
+     * @param values Json array
+     */
+    public void put(String key, double[] values) {
+        put(key, (Object) values);
+    }
+
+    /**
+     * Generates Json string as {"key":[true,false...]}.<br>
+     * The array is stored as is, not copied.
+     *
+     * @param key    Json key
+     * @param values Json array
+     */
+    public void put(String key, boolean[] values) {
+        put(key, (Object) values);
+    }
+
     /**
      * Adds at List
      * @param list list to be jsonified.
@@ -282,13 +908,91 @@ public class JSun {
      * @param value Json value
      */
     public void put(String key, Object value) {
-        if (checkKey(key)) {
-            keyPairList.add(new KeyValuePair(key, value));
+        put(new KeyValuePair(key, value));
+    }
+
+    /**
+     * Generates Json string as {"key":value}, value is stored unboxed.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, int value) {
+        put(new KeyValuePair(key, KeyValuePair.INT, value, null));
+    }
+
+    /**
+     * Generates Json string as {"key":value}, value is stored unboxed.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, long value) {
+        put(new KeyValuePair(key, KeyValuePair.LONG, value, null));
+    }
+
+    /**
+     * Generates Json string as {"key":value}, value is stored unboxed
+     * and written with the fewest digits that read back as the same double.<br>
+     * NaN and infinity are written as null.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, double value) {
+        put(new KeyValuePair(key, KeyValuePair.DOUBLE, Double.doubleToRawLongBits(value), null));
+    }
+
+    /**
+     * Generates Json string as {"key":value}, value is written as Float.toString() does.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, float value) {
+        put(key, (Object) value);
+    }
+
+    /**
+     * Generates Json string as {"key":"c"}, as for a Character.<br>
+     * Without it a char would widen to put(String, int) and be written as its code.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, char value) {
+        put(key, (Object) value);
+    }
+
+    /**
+     * Generates Json string as {"key":true} or {"key":false}.
+     *
+     * @param key  Json key
+     * @param value Json value
+     */
+    public void put(String key, boolean value) {
+        put(new KeyValuePair(key, KeyValuePair.BOOLEAN, value ? 1 : 0, null));
+    }
+
+    private void put(KeyValuePair pair) {
+        if (checkKey(pair.name)) {
+            keyPairList.add(pair);
         } else {
-            throw new RuntimeException("Duplicate key '" + key + "'.");
+            throw new RuntimeException("Duplicate key '" + pair.name + "'.");
         }
     }
 
+    /**
+     * Gets the value of key.
+     *
+     * @param key Json key
+     * @return value, a JSun, a List, a primitive array or a scalar, or null if there is no key.
+     */
+    public Object get(String key) {
+        KeyValuePair pair = keyPairList.find(key);
+        return pair != null ? pair.getValue() : null;
+    }
+
     /**
      * Check for duplicate key.
      *
@@ -297,10 +1001,7 @@ public class JSun {
      */
     private boolean checkKey(String key) {
         if(key==null) throw new RuntimeException("Key may not be null.");
-        for (KeyValuePair obj : keyPairList) {
-            if (obj.name.equals(key) && !obj.name.equals(ARRAY_TAG)) return false;
-        }
-        return true;
+        return key.equals(ARRAY_TAG) || keyPairList.find(key) == null;
     }
 
     /**
@@ -311,74 +1012,241 @@ public class JSun {
         return this.toString();
     }
 
-    @Override
-    public String toString() {
-        if(keyPairList.size()==1 && keyPairList.get(0).name.equals("<JSON_ARRAY>")) return parse(this);
-        else if(keyPairList.size()>1 && keyPairList.get(0).name.equals("<JSON_ARRAY>")) return "[" + parse(this) + "]";
-        else return  "{" + parse(this) + "}";
+    /**
+     * Writes the Json of this JSun to out, token by token.
+     * @param out Appendable to write to.
+     * @throws IOException if out fails.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            WriterPool pool = WriterPool.get();
+            JSunWriter.StringBuilderWriter writer = pool.chars((StringBuilder) out);
+            try {
+                render(writer);
+            } finally {
+                pool.release(writer);
+            }
+        } else if (out instanceof Writer) writeTo((Writer) out);
+        else render(new JSunWriter.AppendableWriter(out));
+    }
+
+    /**
+     * Writes the Json of this JSun to out, token by token.<br>
+     * out is flushed but not closed.
+     * @param out Writer to write to.
+     * @throws IOException if out fails.
+     */
+    public void writeTo(Writer out) throws IOException {
+        JSunWriter writer = new JSunWriter.WriterWriter(out);
+        render(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the Json of this JSun to out as UTF-8.<br>
+     * out is flushed but not closed.
+     * @param out OutputStream to write to.
+     * @throws IOException if out fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        writeUtf8(out, null, null);
+    }
+
+    /**
+     * Writes the Json of this JSun to channel as UTF-8.
+     * @param channel WritableByteChannel to write to, not closed.
+     * @throws IOException if channel fails.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        writeUtf8(null, channel, null);
     }
 
-    private String parse(JSun jsun) {
-        StringBuilder json = new StringBuilder();
-        for (KeyValuePair np : jsun.keyPairList) {
-            json.append(parseKeyValuePair(np));
+    /**
+     * Writes the Json of this JSun into buffer as UTF-8.
+     * @param buffer ByteBuffer to write into, from its position.
+     * @throws java.nio.BufferOverflowException if the Json does not fit.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        try {
+            writeUtf8(null, null, buffer);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
         }
-        if (!json.toString().trim().isEmpty() && json.toString().trim().endsWith(",")) {
-            json = new StringBuilder(json.substring(0, json.length() - 1));
+    }
+
+    private void writeUtf8(OutputStream stream, WritableByteChannel channel, ByteBuffer target) throws IOException {
+        WriterPool pool = WriterPool.get();
+        Utf8Writer writer = pool.bytes(stream, channel, target);
+        try {
+            render(writer);
+            writer.flush();
+        } finally {
+            pool.release(writer);
         }
-        return json.toString();
     }
 
-    private String parseKeyValuePair(KeyValuePair np) {
-        StringBuilder json = new StringBuilder();
-        String name = np.name;
-        Object value = np.value;
-        if(!name.equals(ARRAY_TAG)) {
-            json.append("\"").append(name).append("\":");
+    /**
+     * Gets the Json of this JSun as UTF-8 bytes, without creating a String.
+     * @return UTF-8 bytes
+     */
+    public byte[] toBytes() {
+        WriterPool pool = WriterPool.get();
+        Utf8Writer writer = pool.bytes(null, null, null);
+        try {
+            render(writer);
+            return writer.toBytes();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        } finally {
+            pool.release(writer);
         }
-        if (value instanceof JSun) {
-            json.append(value);
-        } else if (value instanceof JsonArray) {
-            List<Object> arrList = ((JsonArray) value).arrList;
-            json.append("[");
-            for (Object ao : arrList) {
-                if (ao instanceof KeyValuePair) parseKeyValuePair((KeyValuePair) ao);
-                else if (ao instanceof String) json.append("\"").append(ao).append("\",");
-                else {
-                    json.append(ao).append(",");
-                }
-            }
-            if (!json.toString().trim().isEmpty() && json.toString().trim().endsWith(",")) {
-                json = new StringBuilder(json.substring(0, json.length() - 1));
-            }
-            json.append("],");
-        } else if (value instanceof String) {
-            json.append("\"").append(value).append("\",");
+    }
+
+    /**
+     * Gets this JSun as CBOR (RFC 8949), the binary twin of toBytes().<br>
+     * Keys, strings, numbers and nesting are kept as they are, so
+     * JSun.parseCbor(toCbor()) gives the same Json as this JSun.
+     * Integers take 1 to 9 bytes and doubles 5 or 9, no text is formatted or parsed.
+     * @return CBOR bytes
+     */
+    public byte[] toCbor() {
+        WriterPool pool = WriterPool.get();
+        CborWriter writer = pool.cbor(null);
+        try {
+            writer.writeJSun(this);
+            return writer.toBytes();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        } finally {
+            pool.release(writer);
+        }
+    }
+
+    /**
+     * Writes this JSun to out as CBOR.<br>
+     * out is flushed but not closed.
+     * @param out OutputStream to write to.
+     * @throws IOException if out fails.
+     */
+    public void writeCbor(OutputStream out) throws IOException {
+        WriterPool pool = WriterPool.get();
+        CborWriter writer = pool.cbor(out);
+        try {
+            writer.writeJSun(this);
+            writer.flush();
+        } finally {
+            pool.release(writer);
+        }
+    }
+
+    /**
+     * Gets the Json of this JSun.<br>
+     * The result is kept until this JSun, or a JSun it holds, changes,
+     * so asking again for an unchanged JSun returns the same String.
+     * @return json string
+     */
+    @Override
+    public String toString() {
+        Rendered r = rendered;
+        if (r != null && unchangedSince(r.stamp)) return r.json;
+        WriterPool pool = WriterPool.get();
+        JSunWriter.StringBuilderWriter writer = pool.chars(null);
+        long stamp;
+        String json;
+        try {
+            stamp = render(writer);
+            json = writer.builder().toString();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        } finally {
+            pool.release(writer);
+        }
+        rendered = new Rendered(json, stamp, false);
+        return json;
+    }
+
+    /**
+     * Writes this JSun as a whole document, counted by JSunMetrics when enabled.<br>
+     * Writes the cached Json instead if this JSun has not changed since it was made.
+     * @return the stamp the JSun was rendered under, 0 if the cache was used.
+     */
+    private long render(JSunWriter writer) throws IOException {
+        Rendered r = rendered;
+        if (r != null && unchangedSince(r.stamp)) {
+            writer.write(r.json);
+            return 0;
+        }
+        long stamp = RENDERS.incrementAndGet();
+        writer.stamp = stamp;
+        if (!JSunMetrics.enabled) {
+            writer.writeJSun(this);
         } else {
-            json.append(value).append(",");
+            long start = System.nanoTime();
+            writer.writeJSun(this);
+            JSunMetrics.serialized(writer.charsWritten(), writer.bytesWritten(), System.nanoTime() - start);
+        }
+        lastRender = stamp;
+        return stamp;
+    }
+
+    /**
+     * Gets the cached Json of this JSun when it is written inside another JSun under stamp.<br>
+     * A JSun is cached the second time it is written unchanged, so a parent
+     * that is written again can copy it instead of walking it.
+     * The nested caches below it are dropped then, so nested caches never overlap
+     * and hold at most one copy of the Json besides the Strings toString() returned.
+     * @param stamp stamp of the render in progress
+     * @return Json to copy, or null to write this JSun pair by pair.
+     */
+    String cachedJson(long stamp) throws IOException {
+        Rendered r = rendered;
+        if (r != null && unchangedSince(r.stamp)) return r.json;
+        long last = lastRender;
+        lastRender = stamp;
+        if (last == 0 || !unchangedSince(last)) return null;
+        WriterPool pool = WriterPool.get();
+        JSunWriter.StringBuilderWriter writer = pool.chars(null);
+        String json;
+        try {
+            writer.stamp = stamp;
+            writer.writeJSun(this);
+            json = writer.builder().toString();
+        } finally {
+            pool.release(writer);
         }
-        return json.toString();
+        rendered = new Rendered(json, stamp, true);
+        dropNested(keyPairList);
+        return json;
     }
 
-    private ArrayList<Method> findGetters(Class<?> c) {
-        ArrayList<Method> list = new ArrayList<>();
-        Method[] methods = c.getDeclaredMethods();
-        for (Method method : methods)
-            if (isGetter(method))
-                list.add(method);
-        return list;
+    /**
+     * Drops the nested caches held in pairs, down to the first cached JSun on each path.
+     * Walks no further than the render that made the new cache.
+     */
+    private static void dropNested(KeyValueList pairs) {
+        for (int i = 0, n = pairs.size(); i < n; i++) {
+            KeyValuePair pair = pairs.get(i);
+            if (pair.kind == KeyValuePair.OBJECT) dropNested(pair.value);
+        }
     }
 
-    private boolean isGetter(Method method) {
-        if (Modifier.isPublic(method.getModifiers()) &&
-                method.getParameterTypes().length == 0) {
-            if (method.getName().matches("^get[A-Z].*") &&
-                    !method.getReturnType().equals(void.class))
-                return true;
-            return method.getName().matches("^is[A-Z].*") &&
-                    method.getReturnType().equals(boolean.class);
+    private static void dropNested(Object value) {
+        if (value instanceof JSun) {
+            JSun jsun = (JSun) value;
+            Rendered r = jsun.rendered;
+            if (r == null) dropNested(jsun.keyPairList);
+            else if (r.nested) jsun.rendered = null;
+        } else if (value instanceof JsonArray) {
+            for (Object o : ((JsonArray) value).arrList) dropNested(o);
         }
-        return false;
     }
-}
 
+    /**
+     * Checks that neither this JSun nor anything it holds changed after the render stamped stamp.<br>
+     * A change marks the lists holding a JSun dirty as well, and values JSun can not watch,
+     * like primitive arrays, keep their list dirty, so only the pairs of this JSun are asked.
+     */
+    private boolean unchangedSince(long stamp) {
+        return !keyPairList.changedSince(stamp);
+    }
+}
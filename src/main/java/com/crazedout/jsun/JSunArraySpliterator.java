@@ -0,0 +1,253 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits a memory mapped file holding one Json array into its elements, for JSun.streamArray().<br>
+ * The file is mapped, not read, so the heap holds only the elements being parsed.
+ * Each element is copied out of the mapping and parsed on its own.
+ * The first trySplit() makes one structural pass over the remaining elements and
+ * records the comma between two elements about every step bytes. Splits are made
+ * only at those commas, so parallel streams never split inside an element or a string.
+ * @author Fredrik Roos 2023
+ */
+final class JSunArraySpliterator implements Spliterator<JSun> {
+
+    // Files are mapped in chunks, a MappedByteBuffer holds at most 2 GB.
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private static final int MIN_STEP = 1 << 16;
+
+    private final MappedByteBuffer[] chunks;
+    // Duplicates of chunks, made when first read, so every spliterator has its own positions.
+    private final ByteBuffer[] views;
+    private final long end;
+    private long pos;
+    // True after an element, the next one must follow a ','.
+    private boolean separate;
+    // Commas before elements between pos and end, shared between the spliterators of one file.
+    private long[] commas;
+    private int next;
+    private int last;
+    // Reused for every element copied out of the mapping.
+    private byte[] buffer = new byte[256];
+
+    private JSunArraySpliterator(MappedByteBuffer[] chunks, long pos, long end, boolean separate,
+                                 long[] commas, int next, int last) {
+        this.chunks = chunks;
+        this.views = new ByteBuffer[chunks.length];
+        this.pos = pos;
+        this.end = end;
+        this.separate = separate;
+        this.commas = commas;
+        this.next = next;
+        this.last = last;
+    }
+
+    /**
+     * Maps path and finds the brackets of its array.
+     */
+    static JSunArraySpliterator open(Path path) throws IOException {
+        MappedByteBuffer[] chunks;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_MASK + 1, size - offset));
+            }
+        }
+        JSunArraySpliterator root = new JSunArraySpliterator(chunks, 0, size, false, null, 0, 0);
+        long first = root.skipWhitespace(0, size);
+        // A UTF-8 byte order mark is allowed before the array.
+        if (size - first >= 3 && root.at(first) == (byte) 0xEF && root.at(first + 1) == (byte) 0xBB
+                && root.at(first + 2) == (byte) 0xBF) {
+            first = root.skipWhitespace(first + 3, size);
+        }
+        if (first >= size || root.at(first) != '[') throw error(first, "Expected '['");
+        long close = size - 1;
+        while (close > first && isWhitespace(root.at(close))) close--;
+        if (close == first || root.at(close) != ']') throw error(close + 1, "Expected ']'");
+        return new JSunArraySpliterator(chunks, first + 1, close, false, null, 0, 0);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private byte at(long offset) {
+        return view((int) (offset >>> CHUNK_BITS)).get((int) (offset & CHUNK_MASK));
+    }
+
+    private ByteBuffer view(int chunk) {
+        ByteBuffer view = views[chunk];
+        return view != null ? view : (views[chunk] = chunks[chunk].duplicate());
+    }
+
+    private long skipWhitespace(long offset, long limit) {
+        while (offset < limit && isWhitespace(at(offset))) offset++;
+        return offset;
+    }
+
+    /**
+     * Moves pos to the start of the next element.
+     * @return false if there are no more elements before end.
+     */
+    private boolean nextElement() {
+        pos = skipWhitespace(pos, end);
+        if (pos >= end) return false;
+        if (separate) {
+            if (at(pos) != ',') throw error(pos, "Expected ',' or ']'");
+            pos = skipWhitespace(pos + 1, end);
+            if (pos >= end) throw error(pos, "Expected a value");
+        }
+        return true;
+    }
+
+    /**
+     * Finds the end of the element starting at offset, without parsing it.
+     */
+    private long elementEnd(long offset) {
+        byte b = at(offset);
+        if (b != '{' && b != '[') {
+            throw error(offset, "Expected '{' or '['");
+        }
+        int depth = 0;
+        boolean inString = false;
+        for (long i = offset; i < end; i++) {
+            b = at(i);
+            if (inString) {
+                if (b == '\\') i++;
+                else if (b == '"') inString = false;
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return i + 1;
+            }
+        }
+        throw error(offset, "Unterminated element");
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super JSun> action) {
+        if (!nextElement()) return false;
+        long start = pos;
+        long stop = elementEnd(start);
+        pos = stop;
+        separate = true;
+        while (next < last && commas[next] < pos) next++;
+        action.accept(parse(start, stop));
+        return true;
+    }
+
+    private JSun parse(long start, long stop) {
+        int length = Math.toIntExact(stop - start);
+        if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+        byte[] bytes = buffer;
+        int n = 0;
+        for (long offset = start; offset < stop; ) {
+            ByteBuffer view = view((int) (offset >>> CHUNK_BITS));
+            int from = (int) (offset & CHUNK_MASK);
+            int count = (int) Math.min(stop - offset, view.capacity() - from);
+            view.position(from);
+            view.get(bytes, n, count);
+            n += count;
+            offset += count;
+        }
+        try {
+            return new JSunParser(new String(bytes, 0, length, StandardCharsets.UTF_8)).parseDocument();
+        } catch (RuntimeException ex) {
+            throw new RuntimeException("Invalid element at offset " + start + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Records the commas before elements after pos, about every step bytes.
+     */
+    private void findCommas() {
+        long step = Math.max(MIN_STEP, (end - pos) >>> 10);
+        long[] found = new long[16];
+        int count = 0;
+        long previous = pos;
+        int depth = 0;
+        boolean inString = false;
+        for (long i = pos; i < end; i++) {
+            byte b = at(i);
+            if (inString) {
+                if (b == '\\') i++;
+                else if (b == '"') inString = false;
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth < 0) throw error(i, "Unexpected '" + (char) b + "'");
+            } else if (b == ',' && depth == 0 && i - previous >= step) {
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = i;
+                previous = i;
+            }
+        }
+        commas = found;
+        next = 0;
+        last = count;
+    }
+
+    @Override
+    public Spliterator<JSun> trySplit() {
+        if (commas == null) findCommas();
+        if (next >= last) return null;
+        int mid = (next + last) >>> 1;
+        JSunArraySpliterator prefix = new JSunArraySpliterator(chunks, pos, commas[mid], separate, commas, next, mid);
+        pos = commas[mid];
+        separate = true;
+        next = mid + 1;
+        return prefix;
+    }
+
+    /**
+     * @return bytes left, an upper bound of the elements left.
+     */
+    @Override
+    public long estimateSize() {
+        return end - pos;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private static RuntimeException error(long at, String message) {
+        return new RuntimeException(message + " at offset " + at + ".");
+    }
+}
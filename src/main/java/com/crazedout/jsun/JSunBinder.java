@@ -0,0 +1,480 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds Json onto objects, the reverse of JSun(Object).<br>
+ * A binding plan is computed once per class and cached. Values are read
+ * straight from the Json text into the setter or constructor parameter type,
+ * primitives without boxing. Keys are matched like JSun(Object) names them:
+ * setName(..) and a constructor parameter named name both take "name".
+ * @author Fredrik Roos 2023
+ */
+final class JSunBinder {
+
+    private static final ClassValue<BindPlan> PLANS = new ClassValue<BindPlan>() {
+        @Override
+        protected BindPlan computeValue(Class<?> type) {
+            return new BindPlan(type);
+        }
+    };
+
+    static final int OBJECT = 0, INT = 1, LONG = 2, DOUBLE = 3, FLOAT = 4, BOOLEAN = 5,
+            SHORT = 6, BYTE = 7, CHAR = 8;
+
+    private final JSunParser parser;
+
+    JSunBinder(String json) {
+        this.parser = new JSunParser(json);
+    }
+
+    /**
+     * Gets the cached binding plan for type, also used by CborReader.
+     */
+    static BindPlan plan(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Binds a Json object to a new instance of type.
+     */
+    <T> T bindDocument(Class<T> type) {
+        parser.skipWhitespace();
+        Object result = readValue(type, type, 0);
+        parser.skipWhitespace();
+        if (parser.pos < parser.length) throw parser.error("Unexpected trailing character");
+        return type.cast(result);
+    }
+
+    /**
+     * Binds a Json array to a List of type.
+     */
+    <T> List<T> bindList(Class<T> type) {
+        parser.skipWhitespace();
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) readList(ArrayList.class, type, 0);
+        parser.skipWhitespace();
+        if (parser.pos < parser.length) throw parser.error("Unexpected trailing character");
+        if (result == null) throw parser.error(0, "Expected '['");
+        return result;
+    }
+
+    private Object readObject(Class<?> type, int depth) {
+        BindPlan plan = PLANS.get(type);
+        JSunParser p = parser;
+        if (++depth > 1024) throw p.error("Nesting too deep");
+        if (p.json.charAt(p.pos) != '{') throw p.error("Expected '{' for " + type.getName());
+        Object target = plan.constructor != null ? null : plan.newInstance();
+        Object[] args = plan.constructor != null ? new Object[plan.parameterCount] : null;
+        p.pos++;
+        p.skipWhitespace();
+        if (p.pos < p.length && p.json.charAt(p.pos) == '}') {
+            p.pos++;
+        } else {
+            while (true) {
+                if (p.pos >= p.length || p.json.charAt(p.pos) != '"') throw p.error("Expected string key");
+                String key = p.readString();
+                p.skipWhitespace();
+                p.expect(':');
+                p.skipWhitespace();
+                Property property = plan.property(key);
+                if (property == null) {
+                    p.skipValue(depth);
+                } else if (args != null) {
+                    args[property.parameter] = readValue(property.type, property.genericType, depth);
+                } else {
+                    set(target, property, depth);
+                }
+                p.skipWhitespace();
+                if (p.pos >= p.length) throw p.error("Unexpected end of input");
+                char c = p.json.charAt(p.pos++);
+                if (c == '}') break;
+                if (c != ',') throw p.error(p.pos - 1, "Expected ',' or '}'");
+                p.skipWhitespace();
+            }
+        }
+        return args != null ? plan.construct(args) : target;
+    }
+
+    /**
+     * Reads the value straight into the setter, primitives without boxing.
+     */
+    private void set(Object target, Property property, int depth) {
+        JSunParser p = parser;
+        if (property.kind != OBJECT && p.json.startsWith("null", p.pos)) {
+            // Json null leaves a primitive at its default.
+            p.readLiteral("null");
+            return;
+        }
+        MethodHandle setter = property.setter;
+        try {
+            switch (property.kind) {
+                case INT:
+                    setter.invokeExact(target, (int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                    break;
+                case LONG:
+                    setter.invokeExact(target, readIntegral(Long.MIN_VALUE, Long.MAX_VALUE));
+                    break;
+                case SHORT:
+                    setter.invokeExact(target, (short) readIntegral(Short.MIN_VALUE, Short.MAX_VALUE));
+                    break;
+                case BYTE:
+                    setter.invokeExact(target, (byte) readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE));
+                    break;
+                case DOUBLE:
+                    setter.invokeExact(target, readDouble());
+                    break;
+                case FLOAT:
+                    setter.invokeExact(target, (float) readDouble());
+                    break;
+                case BOOLEAN:
+                    setter.invokeExact(target, readBoolean());
+                    break;
+                case CHAR:
+                    setter.invokeExact(target, readChar());
+                    break;
+                default:
+                    setter.invokeExact(target, readValue(property.type, property.genericType, depth));
+            }
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new RuntimeException("Could not set '" + property.name + "': " + t.getMessage(), t);
+        }
+    }
+
+    private long readIntegral(long min, long max) {
+        JSunParser p = parser;
+        int start = p.pos;
+        if (p.pos >= p.length || !isNumberStart(p.json.charAt(p.pos))) throw p.error("Expected number");
+        long v = p.readLong();
+        if (v < min || v > max) throw p.error(start, "Number out of range");
+        return v;
+    }
+
+    private double readDouble() {
+        JSunParser p = parser;
+        if (p.pos >= p.length || !isNumberStart(p.json.charAt(p.pos))) throw p.error("Expected number");
+        return p.readDouble();
+    }
+
+    private boolean readBoolean() {
+        JSunParser p = parser;
+        if (p.json.startsWith("true", p.pos)) {
+            p.readLiteral("true");
+            return true;
+        }
+        p.readLiteral("false");
+        return false;
+    }
+
+    private char readChar() {
+        JSunParser p = parser;
+        if (p.pos >= p.length || p.json.charAt(p.pos) != '"') throw p.error("Expected string");
+        int start = p.pos;
+        String s = p.readString();
+        if (s.length() != 1) throw p.error(start, "Expected one character");
+        return s.charAt(0);
+    }
+
+    private static boolean isNumberStart(char c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Reads any value as type, boxed.
+     */
+    private Object readValue(Class<?> type, Type genericType, int depth) {
+        JSunParser p = parser;
+        if (p.pos >= p.length) throw p.error("Unexpected end of input");
+        char c = p.json.charAt(p.pos);
+        if (c == 'n' && p.json.startsWith("null", p.pos)) {
+            p.readLiteral("null");
+            if (type.isPrimitive()) throw p.error("Null for " + type.getName());
+            return null;
+        }
+        switch (kind(type)) {
+            case INT: return (int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case LONG: return readIntegral(Long.MIN_VALUE, Long.MAX_VALUE);
+            case SHORT: return (short) readIntegral(Short.MIN_VALUE, Short.MAX_VALUE);
+            case BYTE: return (byte) readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE);
+            case DOUBLE: return readDouble();
+            case FLOAT: return (float) readDouble();
+            case BOOLEAN: return readBoolean();
+            case CHAR: return readChar();
+            default:
+        }
+        if (type == String.class) {
+            if (c == '"') return p.readString();
+            Object v = p.readValue(depth);
+            return String.valueOf(JSun.JsonArray.unwrap(v));
+        }
+        if (type == Object.class || type == JSun.class) {
+            Object v = p.readValue(depth);
+            if (type == JSun.class && !(v instanceof JSun)) throw p.error("Expected '{'");
+            return JSun.JsonArray.unwrap(v);
+        }
+        if (type == BigDecimal.class || type == BigInteger.class || type == Number.class) {
+            if (!isNumberStart(c)) throw p.error("Expected number");
+            if (type == Number.class) return p.readNumber();
+            p.readDouble();
+            BigDecimal d = new BigDecimal(p.numberText());
+            return type == BigDecimal.class ? d : d.toBigIntegerExact();
+        }
+        if (type.isEnum()) {
+            if (c != '"') throw p.error("Expected string");
+            return enumValue(type, p.readString());
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return readList(type, elementType(genericType), depth);
+        }
+        if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw p.error("Cannot bind to " + type.getName());
+        }
+        return readObject(type, depth);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    /**
+     * The element class of a Collection type, Object if not known.
+     */
+    static Class<?> elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type arg = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (arg instanceof Class) return (Class<?>) arg;
+            if (arg instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) arg).getRawType();
+        }
+        return Object.class;
+    }
+
+    private Collection<Object> readList(Class<?> type, Class<?> elementType, int depth) {
+        JSunParser p = parser;
+        if (p.pos >= p.length || p.json.charAt(p.pos) != '[') throw p.error("Expected '['");
+        if (++depth > 1024) throw p.error("Nesting too deep");
+        Collection<Object> list = Set.class.isAssignableFrom(type) ? new LinkedHashSet<>() : new ArrayList<>();
+        p.pos++;
+        p.skipWhitespace();
+        if (p.pos < p.length && p.json.charAt(p.pos) == ']') {
+            p.pos++;
+            return list;
+        }
+        while (true) {
+            list.add(readValue(elementType, elementType, depth));
+            p.skipWhitespace();
+            if (p.pos >= p.length) throw p.error("Unexpected end of input");
+            char c = p.json.charAt(p.pos++);
+            if (c == ']') return list;
+            if (c != ',') throw p.error(p.pos - 1, "Expected ',' or ']'");
+            p.skipWhitespace();
+        }
+    }
+
+    static int kind(Class<?> type) {
+        if (type == int.class || type == Integer.class) return INT;
+        if (type == long.class || type == Long.class) return LONG;
+        if (type == double.class || type == Double.class) return DOUBLE;
+        if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+        if (type == float.class || type == Float.class) return FLOAT;
+        if (type == short.class || type == Short.class) return SHORT;
+        if (type == byte.class || type == Byte.class) return BYTE;
+        if (type == char.class || type == Character.class) return CHAR;
+        return OBJECT;
+    }
+
+    /**
+     * A setter or constructor parameter and the Json key it is read from.
+     */
+    static final class Property {
+        final String name;
+        final Class<?> type;
+        final Type genericType;
+        final int kind;
+        final MethodHandle setter;
+        final int parameter;
+
+        Property(String name, Class<?> type, Type genericType, MethodHandle setter, int parameter) {
+            this.name = name;
+            this.type = type;
+            this.genericType = genericType;
+            // Only primitive setters skip boxing, boxed ones go through readValue.
+            this.kind = type.isPrimitive() ? kind(type) : OBJECT;
+            this.parameter = parameter;
+            if (setter != null) {
+                Class<?> argType = type.isPrimitive() ? type : Object.class;
+                setter = setter.asType(MethodType.methodType(void.class, Object.class, argType));
+            }
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * How to create and fill a class, computed once per class.
+     */
+    static final class BindPlan {
+        private final Class<?> type;
+        private final Map<String, Property> properties = new HashMap<>();
+        private MethodHandle noArgs;
+        private MethodHandle constructor;
+        private int parameterCount;
+        private Class<?>[] parameterTypes;
+
+        BindPlan(Class<?> type) {
+            this.type = type;
+            JSunClass jSunClass = type.getAnnotation(JSunClass.class);
+            List<String> excludeList = jSunClass != null ? Arrays.asList(jSunClass.exclude()) : null;
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                Constructor<?> c = type.getDeclaredConstructor();
+                noArgs = lookup.unreflectConstructor(accessible(c)).asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException ex) {
+                findConstructor(lookup, excludeList);
+            }
+            if (noArgs != null) findSetters(lookup, excludeList);
+        }
+
+        private void findSetters(MethodHandles.Lookup lookup, List<String> excludeList) {
+            for (Method m : type.getMethods()) {
+                String name = m.getName();
+                if (Modifier.isStatic(m.getModifiers()) || m.getParameterTypes().length != 1) continue;
+                if (name.length() <= 3 || !name.startsWith("set") || name.charAt(3) < 'A' || name.charAt(3) > 'Z') continue;
+                String key = name.substring(3).toLowerCase();
+                if (excludeList != null && excludeList.contains(key)) continue;
+                try {
+                    properties.put(key, new Property(key, m.getParameterTypes()[0], m.getGenericParameterTypes()[0],
+                            lookup.unreflect(accessible(m)), -1));
+                } catch (IllegalAccessException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * The constructor with the most parameters, which needs classes compiled with -parameters.
+         */
+        private void findConstructor(MethodHandles.Lookup lookup, List<String> excludeList) {
+            Constructor<?> best = null;
+            for (Constructor<?> c : type.getDeclaredConstructors()) {
+                Parameter[] params = c.getParameters();
+                if (params.length == 0 || !params[0].isNamePresent()) continue;
+                if (best == null || params.length > best.getParameterCount()) best = c;
+            }
+            if (best == null) return;
+            try {
+                constructor = lookup.unreflectConstructor(accessible(best));
+            } catch (IllegalAccessException ex) {
+                ex.printStackTrace();
+                return;
+            }
+            Parameter[] params = best.getParameters();
+            parameterCount = params.length;
+            parameterTypes = best.getParameterTypes();
+            constructor = constructor.asType(constructor.type().generic()).asSpreader(Object[].class, parameterCount);
+            for (int i = 0; i < params.length; i++) {
+                String key = params[i].getName().toLowerCase();
+                if (excludeList != null && excludeList.contains(key)) continue;
+                properties.put(key, new Property(key, params[i].getType(), params[i].getParameterizedType(), null, i));
+            }
+        }
+
+        /**
+         * @return the number of constructor arguments to collect, 0 if properties are set on newInstance().
+         */
+        int constructorArguments() {
+            return constructor != null ? parameterCount : 0;
+        }
+
+        Property property(String key) {
+            Property property = properties.get(key);
+            return property != null ? property : properties.get(key.toLowerCase());
+        }
+
+        Object newInstance() {
+            if (noArgs == null) {
+                throw new RuntimeException("No constructor to bind " + type.getName()
+                        + ", add a no-args constructor or compile with -parameters.");
+            }
+            try {
+                return (Object) noArgs.invokeExact();
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable t) {
+                throw new RuntimeException(t.getMessage(), t);
+            }
+        }
+
+        Object construct(Object[] args) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == null && parameterTypes[i].isPrimitive()) args[i] = defaultValue(parameterTypes[i]);
+            }
+            try {
+                return (Object) constructor.invokeExact(args);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable t) {
+                throw new RuntimeException(t.getMessage(), t);
+            }
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        switch (kind(type)) {
+            case INT: return 0;
+            case LONG: return 0L;
+            case DOUBLE: return 0d;
+            case FLOAT: return 0f;
+            case BOOLEAN: return false;
+            case SHORT: return (short) 0;
+            case BYTE: return (byte) 0;
+            default: return '\0';
+        }
+    }
+
+    private static <T extends AccessibleObject> T accessible(T member) {
+        try {
+            member.setAccessible(true);
+        } catch (RuntimeException ex) {
+            // Not opened to us, unreflect() will tell if it's public.
+        }
+        return member;
+    }
+}
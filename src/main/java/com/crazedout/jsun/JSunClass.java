@@ -26,11 +26,18 @@ import java.lang.annotation.Target;
  * Annotates a class to be used in JSun.<br>
  *
  * JSunClass(exclude="id","title")
- * will exclude the getId() and getTitle() getters.
+ * will exclude the getId() and getTitle() getters.<br>
+ * JSunClass(fields={"title","musicians.name"})
+ * will include only getTitle() and the names of the musicians, see JSunProjection.
  * @author Fredrik Roos 2023
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface JSunClass {
     String[] exclude() default {};
+
+    /**
+     * Paths of the only fields to write, all fields if empty.
+     */
+    String[] fields() default {};
 }
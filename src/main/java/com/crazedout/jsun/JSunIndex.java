@@ -0,0 +1,479 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lazy access to a Json document through a structural index.<br>
+ * One pass over the text records where every value starts and ends and
+ * where each object or array ends, and checks the grammar on the way.
+ * Nothing is decoded until a value is reached through a path, then only that
+ * value is built, the same way JSun.parse() would build it.
+ * <pre>
+ *     <code>
+ *         JSunIndex index = JSun.index(json);
+ *         String name = index.getString("band.members[2].name");
+ *         long year = index.getLong("band.founded");
+ *     </code>
+ * </pre>
+ * A path is keys separated by '.', with [n] for the n:th array element,
+ * and "" for the whole document. Escapes in strings are checked when the
+ * string is read, duplicate keys when the object holding them is read,
+ * the first match wins before that.
+ * @author Fredrik Roos 2023
+ */
+public final class JSunIndex {
+
+    private static final int MAX_DEPTH = 1024;
+
+    private static final byte OBJECT = 0, ARRAY = 1, STRING = 2, NUMBER = 3, TRUE = 4, FALSE = 5, NULL = 6, KEY = 7;
+    // Or:ed into the kind of strings and keys containing a backslash.
+    private static final byte ESCAPED = 0x10;
+
+    // Exactly one of json and bytes is set.
+    private final String json;
+    private final byte[] bytes;
+    private final int length;
+    private int pos;
+
+    // The tape, one entry per value and per key, in document order.
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    // Entry following the value and everything it holds.
+    private int[] nexts;
+    private int count;
+
+    JSunIndex(String json) {
+        this.json = json;
+        this.bytes = null;
+        this.length = json.length();
+        build();
+    }
+
+    JSunIndex(byte[] bytes) {
+        this.json = null;
+        this.bytes = bytes;
+        this.length = bytes.length;
+        build();
+    }
+
+    private void build() {
+        // About one entry per 6 characters of typical Json.
+        int capacity = Math.max(64, length / 6);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        nexts = new int[capacity];
+        skipWhitespace();
+        if (pos >= length) throw error("Unexpected end of input");
+        char c = at(pos);
+        if (c != '{' && c != '[') throw error("Expected '{' or '['");
+        scanValue(0);
+        skipWhitespace();
+        if (pos < length) throw error("Unexpected trailing character");
+    }
+
+    private char at(int i) {
+        return json != null ? json.charAt(i) : (char) (bytes[i] & 0xFF);
+    }
+
+    private int add(byte kind) {
+        if (count == kinds.length) {
+            int n = count * 2;
+            kinds = Arrays.copyOf(kinds, n);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            nexts = Arrays.copyOf(nexts, n);
+        }
+        kinds[count] = kind;
+        starts[count] = pos;
+        return count++;
+    }
+
+    private void scanValue(int depth) {
+        if (pos >= length) throw error("Unexpected end of input");
+        char c = at(pos);
+        int node;
+        switch (c) {
+            case '{':
+                node = add(OBJECT);
+                scanObject(depth + 1);
+                break;
+            case '[':
+                node = add(ARRAY);
+                scanArray(depth + 1);
+                break;
+            case '"':
+                node = add(STRING);
+                if (scanString()) kinds[node] |= ESCAPED;
+                break;
+            case 't':
+                node = add(TRUE);
+                scanLiteral("true");
+                break;
+            case 'f':
+                node = add(FALSE);
+                scanLiteral("false");
+                break;
+            case 'n':
+                node = add(NULL);
+                scanLiteral("null");
+                break;
+            default:
+                if (c != '-' && (c < '0' || c > '9')) throw error("Unexpected character '" + c + "'");
+                node = add(NUMBER);
+                scanNumber();
+        }
+        ends[node] = pos;
+        nexts[node] = count;
+    }
+
+    private void scanObject(int depth) {
+        if (depth > MAX_DEPTH) throw error("Nesting too deep");
+        pos++;
+        skipWhitespace();
+        if (pos < length && at(pos) == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            if (pos >= length || at(pos) != '"') throw error("Expected string key");
+            int key = add(KEY);
+            if (scanString()) kinds[key] |= ESCAPED;
+            ends[key] = pos;
+            nexts[key] = count;
+            skipWhitespace();
+            if (pos >= length || at(pos) != ':') throw error("Expected ':'");
+            pos++;
+            skipWhitespace();
+            scanValue(depth);
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = at(pos++);
+            if (c == '}') return;
+            if (c != ',') throw error(pos - 1, "Expected ',' or '}'");
+            skipWhitespace();
+        }
+    }
+
+    private void scanArray(int depth) {
+        if (depth > MAX_DEPTH) throw error("Nesting too deep");
+        pos++;
+        skipWhitespace();
+        if (pos < length && at(pos) == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            scanValue(depth);
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = at(pos++);
+            if (c == ']') return;
+            if (c != ',') throw error(pos - 1, "Expected ',' or ']'");
+            skipWhitespace();
+        }
+    }
+
+    /**
+     * Finds the closing quote, pos is at the opening one.
+     * @return true if the string holds a backslash.
+     */
+    private boolean scanString() {
+        int start = pos++;
+        boolean escapes = false;
+        while (pos < length) {
+            char c = at(pos++);
+            if (c == '"') return escapes;
+            if (c < 0x20) throw error(pos - 1, "Control character in string");
+            if (c == '\\') {
+                escapes = true;
+                pos++;
+            }
+        }
+        throw error(start, "Unterminated string");
+    }
+
+    private void scanNumber() {
+        int start = pos;
+        if (at(pos) == '-') pos++;
+        if (pos < length && at(pos) == '0') {
+            pos++;
+        } else if (digits() == 0) {
+            throw error(start, "Invalid number");
+        }
+        if (pos < length && at(pos) == '.') {
+            pos++;
+            if (digits() == 0) throw error(start, "Invalid number");
+        }
+        if (pos < length && (at(pos) == 'e' || at(pos) == 'E')) {
+            pos++;
+            if (pos < length && (at(pos) == '+' || at(pos) == '-')) pos++;
+            if (digits() == 0) throw error(start, "Invalid number");
+        }
+    }
+
+    private int digits() {
+        int start = pos;
+        while (pos < length) {
+            char c = at(pos);
+            if (c < '0' || c > '9') break;
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private void scanLiteral(String literal) {
+        int n = literal.length();
+        if (pos + n > length) throw error("Invalid literal");
+        for (int i = 0; i < n; i++) {
+            if (at(pos + i) != literal.charAt(i)) throw error("Invalid literal");
+        }
+        pos += n;
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            char c = at(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    /**
+     * Follows path from the root.
+     * @return the entry of the value, -1 if there is none.
+     */
+    private int find(String path) {
+        int node = 0;
+        int i = 0;
+        int n = path.length();
+        while (i < n && node >= 0) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                int close = path.indexOf(']', i);
+                if (close < 0) throw invalidPath(path);
+                int index;
+                try {
+                    index = Integer.parseInt(path.substring(i + 1, close));
+                } catch (NumberFormatException ex) {
+                    throw invalidPath(path);
+                }
+                if (index < 0) throw invalidPath(path);
+                node = element(node, index);
+                i = close + 1;
+                if (i < n && path.charAt(i) == '.') {
+                    i++;
+                    if (i == n) throw invalidPath(path);
+                }
+            } else {
+                int end = i;
+                while (end < n && path.charAt(end) != '.' && path.charAt(end) != '[') end++;
+                if (end == i) throw invalidPath(path);
+                node = member(node, path.substring(i, end));
+                i = end;
+                if (i < n && path.charAt(i) == '.') {
+                    i++;
+                    if (i == n) throw invalidPath(path);
+                }
+            }
+        }
+        return node;
+    }
+
+    private int kind(int node) {
+        return kinds[node] & ~ESCAPED;
+    }
+
+    private int element(int node, int index) {
+        if (kinds[node] != ARRAY) return -1;
+        int end = nexts[node];
+        int child = node + 1;
+        for (int i = 0; i < index && child < end; i++) child = nexts[child];
+        return child < end ? child : -1;
+    }
+
+    private int member(int node, String name) {
+        if (kinds[node] != OBJECT) return -1;
+        boolean ascii = true;
+        for (int i = 0; i < name.length() && ascii; i++) ascii = name.charAt(i) < 0x80;
+        int end = nexts[node];
+        for (int key = node + 1; key < end; key = nexts[key + 1]) {
+            if (keyEquals(key, name, ascii)) return key + 1;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int key, String name, boolean ascii) {
+        int start = starts[key] + 1;
+        int len = ends[key] - 1 - start;
+        if ((kinds[key] & ESCAPED) == 0) {
+            if (json != null) return len == name.length() && json.regionMatches(start, name, 0, len);
+            // An ascii name is its own UTF-8, other names are at least as many bytes as chars.
+            if (ascii) {
+                if (len != name.length()) return false;
+                for (int i = 0; i < len; i++) {
+                    if (bytes[start + i] != name.charAt(i)) return false;
+                }
+                return true;
+            }
+            if (len < name.length()) return false;
+        }
+        return name.equals(readString(key));
+    }
+
+    private JSunParser parser(int node) {
+        if (json != null) {
+            JSunParser p = new JSunParser(json);
+            p.pos = starts[node];
+            return p;
+        }
+        return new JSunParser(new String(bytes, starts[node], ends[node] - starts[node], StandardCharsets.UTF_8));
+    }
+
+    private String readString(int node) {
+        if ((kinds[node] & ESCAPED) == 0) {
+            int start = starts[node] + 1;
+            int end = ends[node] - 1;
+            return json != null ? json.substring(start, end) : new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+        return parser(node).readString();
+    }
+
+    /**
+     * @param path path of the value
+     * @return true if there is a value at path, Json null included.
+     */
+    public boolean has(String path) {
+        return find(path) >= 0;
+    }
+
+    /**
+     * Reads the value at path, and only that value.
+     * @param path path of the value, "" for the whole document.
+     * @return a JSun, a List or a scalar, as JSun.get() gives it, or null if there is no value at path.
+     * @throws RuntimeException if the value holds an invalid escape or a duplicate key.
+     */
+    public Object get(String path) {
+        int node = find(path);
+        if (node < 0) return null;
+        switch (kind(node)) {
+            case STRING:
+                return readString(node);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                return JSun.JsonArray.unwrap(parser(node).readValue(0));
+        }
+    }
+
+    /**
+     * @param path path of a string
+     * @return the string, or null for Json null or no value at path.
+     * @throws RuntimeException if the value is not a string.
+     */
+    public String getString(String path) {
+        int node = find(path);
+        if (node < 0 || kinds[node] == NULL) return null;
+        if (kind(node) != STRING) throw new RuntimeException("Value at '" + path + "' is not a string.");
+        return readString(node);
+    }
+
+    /**
+     * @param path path of an integral number
+     * @return the number
+     * @throws RuntimeException if there is no number at path, or it does not fit a long.
+     */
+    public long getLong(String path) {
+        return parser(number(path)).readLong();
+    }
+
+    /**
+     * @param path path of a number
+     * @return the number
+     * @throws RuntimeException if there is no number at path.
+     */
+    public double getDouble(String path) {
+        return parser(number(path)).readDouble();
+    }
+
+    private int number(String path) {
+        int node = find(path);
+        if (node < 0 || kinds[node] != NUMBER) throw new RuntimeException("Value at '" + path + "' is not a number.");
+        return node;
+    }
+
+    /**
+     * @param path path of true or false
+     * @return the boolean
+     * @throws RuntimeException if there is no boolean at path.
+     */
+    public boolean getBoolean(String path) {
+        int node = find(path);
+        if (node >= 0 && kinds[node] == TRUE) return true;
+        if (node >= 0 && kinds[node] == FALSE) return false;
+        throw new RuntimeException("Value at '" + path + "' is not a boolean.");
+    }
+
+    /**
+     * @param path path of an object or array
+     * @return number of members or elements, -1 if there is no object or array at path.
+     */
+    public int size(String path) {
+        int node = find(path);
+        if (node < 0 || (kinds[node] != OBJECT && kinds[node] != ARRAY)) return -1;
+        int size = 0;
+        int end = nexts[node];
+        for (int child = node + 1; child < end; size++) {
+            if (kind(child) == KEY) child++;
+            child = nexts[child];
+        }
+        return size;
+    }
+
+    /**
+     * Gets the Json text of the value at path as it is in the document, without decoding it.
+     * @param path path of the value
+     * @return Json text, or null if there is no value at path.
+     */
+    public String getJson(String path) {
+        int node = find(path);
+        if (node < 0) return null;
+        return json != null ? json.substring(starts[node], ends[node])
+                : new String(bytes, starts[node], ends[node] - starts[node], StandardCharsets.UTF_8);
+    }
+
+    private RuntimeException invalidPath(String path) {
+        return new RuntimeException("Invalid path '" + path + "'.");
+    }
+
+    private RuntimeException error(String message) {
+        return error(pos, message);
+    }
+
+    private RuntimeException error(int at, String message) {
+        return new RuntimeException(message + " at offset " + at + ".");
+    }
+}
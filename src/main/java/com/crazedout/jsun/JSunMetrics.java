@@ -0,0 +1,281 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for what JSun spends its time on, off by default.<br>
+ * While disabled the instrumented paths only read one volatile flag, no clock is read
+ * and nothing is counted. Enable with JSunMetrics.enable(), then read the counters here,
+ * over JMX after register(), or as events through a JSunMetricsListener.
+ * @author Fredrik Roos 2023
+ */
+public final class JSunMetrics implements JSunMetricsMXBean {
+
+    /**
+     * Name the MXBean is registered under.
+     */
+    public static final String OBJECT_NAME = "com.crazedout.jsun:type=JSunMetrics";
+
+    private static final int BUCKETS = 32;
+    private static final JSunMetrics INSTANCE = new JSunMetrics();
+
+    static volatile boolean enabled;
+
+    private final List<JSunMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder serializationNanos = new LongAdder();
+    private final ConcurrentHashMap<Class<?>, LongAdder> planHits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, LongAdder> planMisses = new ConcurrentHashMap<>();
+    private final LongAdder planBuildNanos = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder validationNanos = new LongAdder();
+    private final LongAdder[] validationHistogram = new LongAdder[BUCKETS];
+    private final LongAdder results = new LongAdder();
+    private final LongAdder resultRows = new LongAdder();
+    private final LongAdder resultNanos = new LongAdder();
+
+    private JSunMetrics() {
+        for (int i = 0; i < BUCKETS; i++) validationHistogram[i] = new LongAdder();
+    }
+
+    /**
+     * @return the metrics.
+     */
+    public static JSunMetrics get() {
+        return INSTANCE;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Registers the metrics with the platform MBeanServer, once.
+     */
+    public static synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(INSTANCE, name);
+        } catch (JMException ex) {
+            throw new RuntimeException("Could not register " + OBJECT_NAME + ": " + ex.getMessage());
+        }
+    }
+
+    public static void addListener(JSunMetricsListener listener) {
+        INSTANCE.listeners.add(listener);
+    }
+
+    public static void removeListener(JSunMetricsListener listener) {
+        INSTANCE.listeners.remove(listener);
+    }
+
+    // Recorders, only called while enabled.
+
+    static void serialized(long charCount, long byteCount, long nanos) {
+        JSunMetrics m = INSTANCE;
+        m.documents.increment();
+        if (charCount > 0) m.chars.add(charCount);
+        if (byteCount > 0) m.bytes.add(byteCount);
+        m.serializationNanos.add(nanos);
+        for (JSunMetricsListener l : m.listeners) l.serialized(charCount, byteCount, nanos);
+    }
+
+    static void planHit(Class<?> type) {
+        JSunMetrics m = INSTANCE;
+        counter(m.planHits, type).increment();
+        for (JSunMetricsListener l : m.listeners) l.planHit(type);
+    }
+
+    static void planMiss(Class<?> type, long nanos) {
+        JSunMetrics m = INSTANCE;
+        counter(m.planMisses, type).increment();
+        m.planBuildNanos.add(nanos);
+        for (JSunMetricsListener l : m.listeners) l.planMiss(type, nanos);
+    }
+
+    static void validated(long charCount, long nanos, boolean valid) {
+        JSunMetrics m = INSTANCE;
+        m.validations.increment();
+        if (!valid) m.validationFailures.increment();
+        m.validationNanos.add(nanos);
+        long micros = nanos / 1000;
+        m.validationHistogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        for (JSunMetricsListener l : m.listeners) l.validated(charCount, nanos, valid);
+    }
+
+    static void resultRows(long rows, long nanos) {
+        JSunMetrics m = INSTANCE;
+        m.results.increment();
+        m.resultRows.add(rows);
+        m.resultNanos.add(nanos);
+        for (JSunMetricsListener l : m.listeners) l.resultRows(rows, nanos);
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<Class<?>, LongAdder> map, Class<?> type) {
+        LongAdder counter = map.get(type);
+        return counter != null ? counter : map.computeIfAbsent(type, t -> new LongAdder());
+    }
+
+    private static Map<String, Long> byName(ConcurrentHashMap<Class<?>, LongAdder> map) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Class<?>, LongAdder> e : map.entrySet()) result.put(e.getKey().getName(), e.getValue().sum());
+        return result;
+    }
+
+    private static long sum(ConcurrentHashMap<Class<?>, LongAdder> map) {
+        long sum = 0;
+        for (LongAdder counter : map.values()) sum += counter.sum();
+        return sum;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        JSunMetrics.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        documents.reset();
+        chars.reset();
+        bytes.reset();
+        serializationNanos.reset();
+        planHits.clear();
+        planMisses.clear();
+        planBuildNanos.reset();
+        validations.reset();
+        validationFailures.reset();
+        validationNanos.reset();
+        for (LongAdder bucket : validationHistogram) bucket.reset();
+        results.reset();
+        resultRows.reset();
+        resultNanos.reset();
+    }
+
+    @Override
+    public long getDocumentsSerialized() {
+        return documents.sum();
+    }
+
+    @Override
+    public long getCharsSerialized() {
+        return chars.sum();
+    }
+
+    @Override
+    public long getBytesSerialized() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getSerializationNanos() {
+        return serializationNanos.sum();
+    }
+
+    @Override
+    public long getPlanCacheHits() {
+        return sum(planHits);
+    }
+
+    @Override
+    public long getPlanCacheMisses() {
+        return sum(planMisses);
+    }
+
+    @Override
+    public long getPlanBuildNanos() {
+        return planBuildNanos.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPlanCacheHitsByClass() {
+        return byName(planHits);
+    }
+
+    @Override
+    public Map<String, Long> getPlanCacheMissesByClass() {
+        return byName(planMisses);
+    }
+
+    @Override
+    public long getValidations() {
+        return validations.sum();
+    }
+
+    @Override
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    @Override
+    public long getValidationNanos() {
+        return validationNanos.sum();
+    }
+
+    @Override
+    public long[] getValidationLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) counts[i] = validationHistogram[i].sum();
+        return counts;
+    }
+
+    @Override
+    public long getResults() {
+        return results.sum();
+    }
+
+    @Override
+    public long getResultRows() {
+        return resultRows.sum();
+    }
+
+    @Override
+    public long getResultNanos() {
+        return resultNanos.sum();
+    }
+
+    @Override
+    public double getResultRowsPerSecond() {
+        long nanos = resultNanos.sum();
+        return nanos > 0 ? resultRows.sum() * 1e9 / nanos : 0;
+    }
+}
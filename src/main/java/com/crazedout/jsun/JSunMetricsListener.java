@@ -0,0 +1,68 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+/**
+ * Receives JSun metrics events as they happen, while JSunMetrics is enabled.<br>
+ * Called on the thread doing the work, so implementations should be quick and thread safe.
+ * All methods do nothing by default.
+ * @author Fredrik Roos 2023
+ */
+public interface JSunMetricsListener {
+
+    /**
+     * A JSun was written by toString(), writeTo() or toBytes().
+     * @param chars chars written, -1 for byte sinks and for Writers and Appendables.
+     * @param bytes UTF-8 bytes written, -1 for char sinks.
+     * @param nanos time taken.
+     */
+    default void serialized(long chars, long bytes, long nanos) {
+    }
+
+    /**
+     * JSun(Object) found the serialization plan of type in the cache.
+     * @param type class being serialized.
+     */
+    default void planHit(Class<?> type) {
+    }
+
+    /**
+     * JSun(Object) had to build the serialization plan of type with reflection.
+     * @param type class being serialized.
+     * @param nanos time taken to build the plan.
+     */
+    default void planMiss(Class<?> type, long nanos) {
+    }
+
+    /**
+     * eval() validated a Json string.
+     * @param chars length of the Json.
+     * @param nanos time taken.
+     * @param valid false if the Json was rejected.
+     */
+    default void validated(long chars, long nanos, boolean valid) {
+    }
+
+    /**
+     * JSunResult read, or JSunResultWriter wrote, a ResultSet.
+     * @param rows number of rows.
+     * @param nanos time taken.
+     */
+    default void resultRows(long rows, long nanos) {
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.util.Map;
+
+/**
+ * JMX view of JSunMetrics, registered as com.crazedout.jsun:type=JSunMetrics.
+ * @author Fredrik Roos 2023
+ */
+public interface JSunMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Sets all counters to zero.
+     */
+    void reset();
+
+    long getDocumentsSerialized();
+
+    /**
+     * @return chars written by toString() and writeTo(StringBuilder).
+     */
+    long getCharsSerialized();
+
+    /**
+     * @return bytes written by toBytes() and the UTF-8 writeTo() methods.
+     */
+    long getBytesSerialized();
+
+    long getSerializationNanos();
+
+    long getPlanCacheHits();
+
+    long getPlanCacheMisses();
+
+    /**
+     * @return time spent building plans with reflection, e.i on misses.
+     */
+    long getPlanBuildNanos();
+
+    /**
+     * @return plan cache hits by class name.
+     */
+    Map<String, Long> getPlanCacheHitsByClass();
+
+    /**
+     * @return plan cache misses by class name.
+     */
+    Map<String, Long> getPlanCacheMissesByClass();
+
+    long getValidations();
+
+    long getValidationFailures();
+
+    long getValidationNanos();
+
+    /**
+     * Validation latency, bucket 0 counts validations under 1 microsecond and
+     * bucket i those that took [2^(i-1), 2^i) microseconds. The last bucket takes the rest.
+     * @return counts per bucket.
+     */
+    long[] getValidationLatencyHistogram();
+
+    /**
+     * @return ResultSets read by JSunResult or written by JSunResultWriter.
+     */
+    long getResults();
+
+    long getResultRows();
+
+    long getResultNanos();
+
+    /**
+     * @return result rows per second of time spent in JSunResult and JSunResultWriter.
+     */
+    double getResultRowsPerSecond();
+}
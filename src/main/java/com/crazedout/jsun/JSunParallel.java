@@ -0,0 +1,153 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join support for large Json arrays.<br>
+ * Arrays with at least threshold elements are converted to JSun and rendered
+ * in chunks on a ForkJoinPool. The chunks are written in order, so the output
+ * is the same as from the sequential path.
+ * @author Fredrik Roos 2023
+ */
+final class JSunParallel {
+
+    private static final int MIN_CHUNK = 256;
+
+    private static volatile int threshold = Integer.MAX_VALUE;
+    private static volatile ForkJoinPool pool;
+
+    private JSunParallel() {
+    }
+
+    static void setThreshold(int threshold) {
+        if (threshold < 1) throw new RuntimeException("Threshold must be at least 1.");
+        JSunParallel.threshold = threshold;
+    }
+
+    static int getThreshold() {
+        return threshold;
+    }
+
+    static void setPool(ForkJoinPool pool) {
+        JSunParallel.pool = pool;
+    }
+
+    static boolean isParallel(int size) {
+        return size >= threshold;
+    }
+
+    private static ForkJoinPool pool() {
+        ForkJoinPool p = pool;
+        return p != null ? p : ForkJoinPool.commonPool();
+    }
+
+    private static int chunkSize(int size) {
+        return Math.max(MIN_CHUNK, size / (pool().getParallelism() * 4));
+    }
+
+    /**
+     * Converts objs to Json array elements in parallel.
+     * @param objs elements
+     * @param projection what to write of the objects, null for all.
+     * @return converted elements, in order.
+     */
+    static Object[] elements(Object[] objs, JSunProjection projection) {
+        Object[] out = new Object[objs.length];
+        int chunk = chunkSize(objs.length);
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int start = 0; start < objs.length; start += chunk) {
+            int from = start;
+            int to = Math.min(objs.length, start + chunk);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (int i = from; i < to; i++) out[i] = JSun.JsonArray.element(objs[i], projection);
+                }
+            });
+        }
+        invokeAll(tasks);
+        return out;
+    }
+
+    /**
+     * Renders items as comma separated Json chunks in parallel.
+     * @param items Json array elements
+     * @param outer writer of the render in progress, told if a chunk held a value JSun can not watch
+     * @return rendered chunks, in order.
+     */
+    static String[] render(List<Object> items, JSunWriter outer) {
+        long stamp = outer.stamp;
+        int size = items.size();
+        int chunk = chunkSize(size);
+        String[] out = new String[(size + chunk - 1) / chunk];
+        boolean[] opaque = new boolean[out.length];
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int n = 0; n < out.length; n++) {
+            int index = n;
+            int from = n * chunk;
+            int to = Math.min(size, from + chunk);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    StringBuilder sb = new StringBuilder();
+                    JSunWriter writer = new JSunWriter.StringBuilderWriter(sb);
+                    writer.stamp = stamp;
+                    try {
+                        for (int i = from; i < to; i++) {
+                            if (i > from) writer.write(',');
+                            writer.writeValue(items.get(i));
+                        }
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex.getMessage(), ex);
+                    }
+                    out[index] = sb.toString();
+                    opaque[index] = writer.opaque;
+                }
+            });
+        }
+        invokeAll(tasks);
+        for (boolean o : opaque) outer.opaque |= o;
+        return out;
+    }
+
+    /**
+     * Runs tasks on the configured pool.<br>
+     * Tasks forked from a worker of that pool, like a large array inside a large array,
+     * are run in place, a worker of any other pool hands them over and waits.
+     */
+    private static void invokeAll(List<RecursiveAction> tasks) {
+        ForkJoinPool p = pool();
+        if (ForkJoinTask.getPool() == p) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            p.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,424 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass Json parser building JSun objects.<br>
+ * Objects become JSun, arrays become Json arrays and numbers become
+ * Integer, Long, BigInteger or Double, the smallest that holds the value.
+ * Strings without escapes and plain numbers are read without copying
+ * through intermediate buffers.
+ * @author Fredrik Roos 2023
+ */
+final class JSunParser {
+
+    private static final int MAX_DEPTH = 1024;
+    // Exactly representable powers of ten, for the double fast path.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    final String json;
+    final int length;
+    int pos;
+    private StringBuilder scratch;
+
+    JSunParser(String json) {
+        this.json = json;
+        this.length = json.length();
+    }
+
+    /**
+     * Parses a Json object or array.
+     * @return JSun
+     */
+    JSun parseDocument() {
+        skipWhitespace();
+        if (pos >= length) throw error("Unexpected end of input");
+        JSun result;
+        char c = json.charAt(pos);
+        if (c == '{') {
+            result = readObject(0);
+        } else if (c == '[') {
+            result = new JSun();
+            result.add(new JSun.KeyValuePair(JSun.ARRAY_TAG, readArray(0)));
+        } else {
+            throw error("Expected '{' or '['");
+        }
+        skipWhitespace();
+        if (pos < length) throw error("Unexpected trailing character");
+        return result;
+    }
+
+    Object readValue(int depth) {
+        if (pos >= length) throw error("Unexpected end of input");
+        char c = json.charAt(pos);
+        switch (c) {
+            case '{':
+                return readObject(depth);
+            case '[':
+                return readArray(depth);
+            case '"':
+                return readString();
+            case 't':
+                readLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                readLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                readLiteral("null");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    JSun readObject(int depth) {
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        JSun jsun = new JSun();
+        pos++;
+        skipWhitespace();
+        if (pos < length && json.charAt(pos) == '}') {
+            pos++;
+            return jsun;
+        }
+        while (true) {
+            if (pos >= length || json.charAt(pos) != '"') throw error("Expected string key");
+            int keyPos = pos;
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            Object value = readValue(depth);
+            if (jsun.find(key) != null) throw error(keyPos, "Duplicate key '" + key + "'");
+            jsun.add(new JSun.KeyValuePair(key, value));
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = json.charAt(pos++);
+            if (c == '}') return jsun;
+            if (c != ',') throw error(pos - 1, "Expected ',' or '}'");
+            skipWhitespace();
+        }
+    }
+
+    JSun.JsonArray readArray(int depth) {
+        if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+        List<Object> items = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (pos < length && json.charAt(pos) == ']') {
+            pos++;
+            return JSun.JsonArray.wrap(items);
+        }
+        while (true) {
+            items.add(readValue(depth));
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = json.charAt(pos++);
+            if (c == ']') return JSun.JsonArray.wrap(items);
+            if (c != ',') throw error(pos - 1, "Expected ',' or ']'");
+            skipWhitespace();
+        }
+    }
+
+    /**
+     * Reads a string, pos is at the opening quote.
+     */
+    String readString() {
+        int start = ++pos;
+        // Fast path, no escapes: one substring.
+        for (int i = start; i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                pos = i + 1;
+                return json.substring(start, i);
+            }
+            if (c == '\\' || c < 0x20) {
+                pos = i;
+                return readEscapedString(start);
+            }
+        }
+        throw error(start - 1, "Unterminated string");
+    }
+
+    private String readEscapedString(int start) {
+        StringBuilder sb = scratch == null ? scratch = new StringBuilder() : scratch;
+        sb.setLength(0);
+        sb.append(json, start, pos);
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c < 0x20) throw error(pos - 1, "Control character in string");
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= length) break;
+            c = json.charAt(pos++);
+            switch (c) {
+                case '"': case '\\': case '/':
+                    sb.append(c);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    int u = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int d = pos < length ? Character.digit(json.charAt(pos), 16) : -1;
+                        if (d < 0) throw error("Invalid unicode escape");
+                        u = (u << 4) | d;
+                        pos++;
+                    }
+                    sb.append((char) u);
+                    break;
+                default:
+                    throw error(pos - 1, "Invalid escape character");
+            }
+        }
+        throw error(start - 1, "Unterminated string");
+    }
+
+    // The last number scanned by scanNumber().
+    private int numberStart;
+    private boolean negative;
+    private long mantissa;
+    private int digits;
+    private int intDigits;
+    private int fractionDigits;
+    private boolean hasExponent;
+    private int exponent;
+
+    /**
+     * Reads a number, pos is at '-' or the first digit.
+     * @return Integer, Long, BigInteger or Double.
+     */
+    Object readNumber() {
+        scanNumber();
+        if (isInteger()) {
+            if (intDigits < 19) {
+                long v = negative ? -mantissa : mantissa;
+                if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) return (int) v;
+                return v;
+            }
+            BigInteger big = new BigInteger(json.substring(numberStart, pos));
+            return big.bitLength() < 64 ? (Object) big.longValue() : big;
+        }
+        return toDouble();
+    }
+
+    /**
+     * Reads a number as long, pos is at '-' or the first digit.
+     */
+    long readLong() {
+        scanNumber();
+        if (isInteger() && intDigits < 19) return negative ? -mantissa : mantissa;
+        if (isInteger()) {
+            BigInteger big = new BigInteger(json.substring(numberStart, pos));
+            if (big.bitLength() < 64) return big.longValue();
+            throw error(numberStart, "Number out of range");
+        }
+        double d = toDouble();
+        if (d != Math.rint(d) || d < Long.MIN_VALUE || d > Long.MAX_VALUE) throw error(numberStart, "Not an integer");
+        return (long) d;
+    }
+
+    /**
+     * Reads a number as double, pos is at '-' or the first digit.
+     */
+    double readDouble() {
+        scanNumber();
+        return toDouble();
+    }
+
+    /**
+     * The text of the last number read.
+     */
+    String numberText() {
+        return json.substring(numberStart, pos);
+    }
+
+    private boolean isInteger() {
+        return fractionDigits == 0 && !hasExponent;
+    }
+
+    private double toDouble() {
+        // Exact when mantissa and power of ten are both exact doubles.
+        int scale = exponent - fractionDigits;
+        if (digits <= 15 && scale >= -22 && scale <= 22) {
+            double d = (double) mantissa;
+            d = scale < 0 ? d / POWERS_OF_TEN[-scale] : d * POWERS_OF_TEN[scale];
+            return negative ? -d : d;
+        }
+        return Double.parseDouble(json.substring(numberStart, pos));
+    }
+
+    private void scanNumber() {
+        int start = numberStart = pos;
+        negative = json.charAt(pos) == '-';
+        if (negative) pos++;
+        mantissa = 0;
+        digits = 0;
+        fractionDigits = 0;
+        hasExponent = false;
+        exponent = 0;
+        int intStart = pos;
+        if (pos < length && json.charAt(pos) == '0') {
+            pos++;
+        } else {
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (digits < 19) mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                pos++;
+            }
+            if (digits == 0) throw error(start, "Invalid number");
+        }
+        intDigits = pos - intStart;
+        if (pos < length && json.charAt(pos) == '.') {
+            pos++;
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (digits < 19) mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                fractionDigits++;
+                pos++;
+            }
+            if (fractionDigits == 0) throw error(start, "Invalid number");
+        }
+        if (pos < length && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            hasExponent = true;
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < length && (json.charAt(pos) == '+' || json.charAt(pos) == '-')) {
+                negativeExponent = json.charAt(pos) == '-';
+                pos++;
+            }
+            int expDigits = 0;
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (exponent < 100_000) exponent = exponent * 10 + (c - '0');
+                expDigits++;
+                pos++;
+            }
+            if (expDigits == 0) throw error(start, "Invalid number");
+            if (negativeExponent) exponent = -exponent;
+        }
+    }
+
+    /**
+     * Skips any value without building it.
+     */
+    void skipValue(int depth) {
+        if (pos >= length) throw error("Unexpected end of input");
+        char c = json.charAt(pos);
+        if (c == '{' || c == '[') {
+            if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+            char end = c == '{' ? '}' : ']';
+            pos++;
+            skipWhitespace();
+            if (pos < length && json.charAt(pos) == end) {
+                pos++;
+                return;
+            }
+            while (true) {
+                if (end == '}') {
+                    if (pos >= length || json.charAt(pos) != '"') throw error("Expected string key");
+                    skipString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                }
+                skipValue(depth);
+                skipWhitespace();
+                if (pos >= length) throw error("Unexpected end of input");
+                char next = json.charAt(pos++);
+                if (next == end) return;
+                if (next != ',') throw error(pos - 1, "Expected ',' or '" + end + "'");
+                skipWhitespace();
+            }
+        } else if (c == '"') {
+            skipString();
+        } else {
+            readValue(depth);
+        }
+    }
+
+    private void skipString() {
+        int start = pos++;
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') return;
+            if (c < 0x20) throw error(pos - 1, "Control character in string");
+            if (c == '\\') {
+                pos = start;
+                readString();
+                return;
+            }
+        }
+        throw error(start, "Unterminated string");
+    }
+
+    void readLiteral(String literal) {
+        int n = literal.length();
+        if (!json.startsWith(literal, pos)) throw error("Invalid literal");
+        pos += n;
+    }
+
+    void expect(char c) {
+        if (pos >= length || json.charAt(pos) != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    void skipWhitespace() {
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    RuntimeException error(String message) {
+        return error(pos, message);
+    }
+
+    RuntimeException error(int at, String message) {
+        return new RuntimeException(message + " at offset " + at + ".");
+    }
+}
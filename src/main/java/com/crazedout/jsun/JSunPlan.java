@@ -0,0 +1,273 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serialization plan for a class, computed once per class and cached.<br>
+ * Holds the getters JSun(Object) reads, in declaration order, with the
+ * JSunClass excludes and fields already applied and the Json keys already encoded,
+ * and the JSunSerializer generated for the class by jsun-processor, if any.
+ * A JSunProjection keeps plans of its own, made by project().
+ * @author Fredrik Roos 2023
+ */
+final class JSunPlan {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<JSunPlan> PLANS = new ClassValue<JSunPlan>() {
+        @Override
+        protected JSunPlan computeValue(Class<?> type) {
+            if (!JSunMetrics.enabled) return new JSunPlan(type);
+            long start = System.nanoTime();
+            JSunPlan plan = new JSunPlan(type);
+            JSunMetrics.planMiss(type, System.nanoTime() - start);
+            plan.missed = true;
+            return plan;
+        }
+    };
+
+    final Property[] properties;
+    final JSunSerializer<Object> serializer;
+    // What to write of the value of each property, null for all of it, or null if all of every value.
+    private final JSunProjection[] projections;
+    // Set when the plan was built with JSunMetrics enabled, so its first lookup is not counted as a hit too.
+    private boolean missed;
+
+    /**
+     * A getter and the Json key it is written under.<br>
+     * Getters returning int, long, double or boolean are also read through a
+     * handle of their own type, so their values need not be boxed.
+     */
+    static final class Property {
+        final String name;
+        final EncodedKey encodedKey;
+        // A JSun.KeyValuePair kind, OBJECT unless bits() reads the value unboxed.
+        final byte kind;
+        private final MethodHandle getter;
+        private final MethodHandle primitive;
+
+        Property(String name, MethodHandle getter) {
+            this.name = name;
+            this.encodedKey = EncodedKey.of(name);
+            this.getter = getter.asType(GETTER_TYPE);
+            Class<?> type = getter.type().returnType();
+            this.kind = kindOf(type);
+            this.primitive = kind != JSun.KeyValuePair.OBJECT
+                    ? getter.asType(MethodType.methodType(type, Object.class)) : null;
+        }
+
+        private static byte kindOf(Class<?> type) {
+            if (type == int.class) return JSun.KeyValuePair.INT;
+            if (type == long.class) return JSun.KeyValuePair.LONG;
+            if (type == double.class) return JSun.KeyValuePair.DOUBLE;
+            if (type == boolean.class) return JSun.KeyValuePair.BOOLEAN;
+            return JSun.KeyValuePair.OBJECT;
+        }
+
+        Object get(Object obj) throws Exception {
+            try {
+                return getter.invokeExact(obj);
+            } catch (Exception | Error ex) {
+                throw ex;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        /**
+         * Reads a primitive property unboxed, encoded as JSun.KeyValuePair bits.
+         */
+        long bits(Object obj) throws Exception {
+            try {
+                switch (kind) {
+                    case JSun.KeyValuePair.INT:
+                        return (int) primitive.invokeExact(obj);
+                    case JSun.KeyValuePair.LONG:
+                        return (long) primitive.invokeExact(obj);
+                    case JSun.KeyValuePair.DOUBLE:
+                        return Double.doubleToRawLongBits((double) primitive.invokeExact(obj));
+                    default:
+                        return (boolean) primitive.invokeExact(obj) ? 1 : 0;
+                }
+            } catch (Exception | Error ex) {
+                throw ex;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    private JSunPlan(Class<?> type) {
+        JSunClass jSunClass = type.getAnnotation(JSunClass.class);
+        JSunSerializer<Object> generated = jSunClass != null ? findSerializer(type) : null;
+        Property[] found = findProperties(type, jSunClass);
+        if (generated != null) found = inOrder(found, generated.names());
+        JSunProjection fields = jSunClass != null && jSunClass.fields().length > 0 ? JSunProjection.of(jSunClass.fields()) : null;
+        if (fields == null) {
+            this.properties = found;
+            this.projections = null;
+            this.serializer = generated;
+        } else {
+            this.properties = select(found, fields);
+            this.projections = children(properties, fields, null);
+            // A generated serializer writes whole values, so not with nested fields.
+            this.serializer = projections == null ? generated : null;
+        }
+    }
+
+    private JSunPlan(Property[] properties, JSunProjection[] projections) {
+        this.properties = properties;
+        this.projections = projections;
+        this.serializer = null;
+    }
+
+    /**
+     * Makes the plan of projection from this plan, for JSunProjection to cache.<br>
+     * Only the selected getters are kept, and a projection given for a value
+     * replaces the one from @JSunClass fields.
+     */
+    JSunPlan project(JSunProjection projection) {
+        Property[] selected = select(properties, projection);
+        JSunProjection[] inherited = null;
+        if (projections != null) {
+            inherited = new JSunProjection[selected.length];
+            for (int i = 0, j = 0; i < properties.length; i++) {
+                if (j < selected.length && properties[i] == selected[j]) inherited[j++] = projections[i];
+            }
+        }
+        return new JSunPlan(selected, children(selected, projection, inherited));
+    }
+
+    private static Property[] select(Property[] properties, JSunProjection projection) {
+        List<Property> list = new ArrayList<>();
+        for (Property property : properties) {
+            if (projection.includes(property.name)) list.add(property);
+        }
+        return list.toArray(new Property[0]);
+    }
+
+    private static JSunProjection[] children(Property[] properties, JSunProjection projection, JSunProjection[] inherited) {
+        JSunProjection[] children = null;
+        for (int i = 0; i < properties.length; i++) {
+            JSunProjection child = projection.child(properties[i].name);
+            if (child == null && inherited != null) child = inherited[i];
+            if (child == null) continue;
+            if (children == null) children = new JSunProjection[properties.length];
+            children[i] = child;
+        }
+        return children;
+    }
+
+    /**
+     * @return what to write of the value of properties[index], null for all of it.
+     */
+    JSunProjection projection(int index) {
+        return projections != null ? projections[index] : null;
+    }
+
+    /**
+     * The properties a generated serializer puts, in the order it puts them,
+     * so JSun.serialize() writes the same Json as JSun(Object).
+     */
+    private static Property[] inOrder(Property[] properties, String[] names) {
+        List<Property> list = new ArrayList<>();
+        for (String name : names) {
+            for (Property property : properties) {
+                if (property.name.equals(name)) list.add(property);
+            }
+        }
+        return list.toArray(new Property[0]);
+    }
+
+    private static Property[] findProperties(Class<?> type, JSunClass jSunClass) {
+        List<String> excludeList = jSunClass != null ? Arrays.asList(jSunClass.exclude()) : null;
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Property> list = new ArrayList<>();
+        for (Method m : type.getDeclaredMethods()) {
+            if (!isGetter(m)) continue;
+            String name = m.getName().substring(3).toLowerCase();
+            if (excludeList != null && excludeList.contains(name)) continue;
+            try {
+                MethodHandle getter = lookup.unreflect(accessible(m));
+                if (Modifier.isStatic(m.getModifiers())) getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                list.add(new Property(name, getter));
+            } catch (IllegalAccessException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return list.toArray(new Property[0]);
+    }
+
+    /**
+     * Loads the serializer generated by jsun-processor for type, if any.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSunSerializer<Object> findSerializer(Class<?> type) {
+        try {
+            Class<?> c = Class.forName(type.getName() + JSunSerializer.SUFFIX, true, type.getClassLoader());
+            return (JSunSerializer<Object>) c.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException ex) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the plan for type.
+     * @param type class to be serialized.
+     * @return cached plan.
+     */
+    static JSunPlan of(Class<?> type) {
+        if (!JSunMetrics.enabled) return PLANS.get(type);
+        JSunPlan plan = PLANS.get(type);
+        if (plan.missed) plan.missed = false;
+        else JSunMetrics.planHit(type);
+        return plan;
+    }
+
+    private static Method accessible(Method m) {
+        try {
+            m.setAccessible(true);
+        } catch (RuntimeException ex) {
+            // Not opened to us, unreflect() will tell if it's public.
+        }
+        return m;
+    }
+
+    /**
+     * Public, no arguments, non void and named getX...
+     */
+    private static boolean isGetter(Method method) {
+        if (!Modifier.isPublic(method.getModifiers())) return false;
+        if (method.getParameterTypes().length != 0 || method.getReturnType().equals(void.class)) return false;
+        String name = method.getName();
+        return name.length() > 3 && name.startsWith("get") && name.charAt(3) >= 'A' && name.charAt(3) <= 'Z';
+    }
+}
@@ -0,0 +1,143 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The fields to write of an object, the dynamic counterpart of @JSunClass(fields=...).<br>
+ * A path is a Json key, or keys separated by '.' to select fields of the objects
+ * in a List, e.g. "musicians.name". A key alone selects the whole value.
+ * <pre>
+ *     <code>
+ *         static final JSunProjection SUMMARY = JSunProjection.of("title", "year", "musicians.name");
+ *         JSun json = new JSun(album, SUMMARY);   <i>{"title":"Help!","year":1965,"musicians":[{"name":"John"},...]}</i>
+ *     </code>
+ * </pre>
+ * The paths are compiled once. For every class written, the projection keeps a
+ * plan of its own holding only the selected getters, so getters left out are
+ * never called and no key is matched while writing.
+ * For a JSunResult the paths select columns by label, and other columns are never read.
+ * Keys are matched ignoring case, as getter keys are lower case.
+ * A projection is immutable and thread safe, so keep it and reuse it.
+ * @author Fredrik Roos 2023
+ */
+public final class JSunProjection {
+
+    // Selected key, lower case, to what is selected of its value, ALL for the whole value.
+    private final Map<String, JSunProjection> fields;
+
+    private static final JSunProjection ALL = new JSunProjection(Collections.<String, JSunProjection>emptyMap());
+
+    private final ClassValue<JSunPlan> plans = new ClassValue<JSunPlan>() {
+        @Override
+        protected JSunPlan computeValue(Class<?> type) {
+            return JSunPlan.of(type).project(JSunProjection.this);
+        }
+    };
+
+    private JSunProjection(Map<String, JSunProjection> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Compiles paths into a projection.
+     * @param paths keys, or keys separated by '.' for fields of nested objects.
+     * @return JSunProjection
+     * @throws RuntimeException if a path is empty or has an empty key.
+     */
+    public static JSunProjection of(String... paths) {
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (String path : paths) {
+            if (path == null || path.isEmpty()) throw new RuntimeException("Projection path may not be empty.");
+            Map<String, Object> node = tree;
+            String[] keys = path.toLowerCase(Locale.ROOT).split("\\.", -1);
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                if (key.isEmpty()) throw new RuntimeException("Invalid projection path '" + path + "'.");
+                boolean last = i == keys.length - 1;
+                Object child = node.get(key);
+                if (last || child == ALL) {
+                    // A whole value covers any fields of it.
+                    node.put(key, ALL);
+                    break;
+                }
+                if (child == null) node.put(key, child = new LinkedHashMap<String, Object>());
+                @SuppressWarnings("unchecked")
+                Map<String, Object> next = (Map<String, Object>) child;
+                node = next;
+            }
+        }
+        return compile(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSunProjection compile(Map<String, Object> tree) {
+        Map<String, JSunProjection> fields = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : tree.entrySet()) {
+            Object v = e.getValue();
+            fields.put(e.getKey(), v == ALL ? ALL : compile((Map<String, Object>) v));
+        }
+        return new JSunProjection(Collections.unmodifiableMap(fields));
+    }
+
+    /**
+     * @param key Json key, lower case.
+     * @return true if the value of key is written.
+     */
+    boolean includes(String key) {
+        return fields.containsKey(key);
+    }
+
+    /**
+     * @param key Json key, lower case.
+     * @return what to write of the value of key, null for all of it.
+     */
+    JSunProjection child(String key) {
+        JSunProjection child = fields.get(key);
+        return child != ALL ? child : null;
+    }
+
+    /**
+     * @return the plan of type holding the selected getters only, cached.
+     */
+    JSunPlan plan(Class<?> type) {
+        return plans.get(type);
+    }
+
+    /**
+     * Gets the plan of type under projection, the full plan if projection is null.
+     */
+    static JSunPlan plan(Class<?> type, JSunProjection projection) {
+        return projection != null ? projection.plan(type) : JSunPlan.of(type);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, JSunProjection> e : fields.entrySet()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(e.getKey());
+            if (e.getValue() != ALL) sb.append('{').append(e.getValue()).append('}');
+        }
+        return sb.toString();
+    }
+}
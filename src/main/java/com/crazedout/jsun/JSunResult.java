@@ -18,17 +18,23 @@
 package com.crazedout.jsun;
 
 import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 public class JSunResult {
 
-    private final List<JSun> list = new LinkedList<>();
+    private final List<JSun> list = new ArrayList<>();
     private boolean closeRs = true;
+    private boolean rowsAsObjects;
+    private JSunProjection projection;
 
     public JSunResult(Connection con, String sql) throws SQLException {
         this.execute(executeQuery(con,sql));
@@ -38,6 +44,54 @@ public class JSunResult {
         this.execute(rs);
     }
 
+    /**
+     * @param con Connection
+     * @param sql query
+     * @param rowsAsObjects true for rows as {"column":value,...} instead of [value,...]
+     * @throws SQLException if the query fails.
+     */
+    public JSunResult(Connection con, String sql, boolean rowsAsObjects) throws SQLException {
+        this.rowsAsObjects = rowsAsObjects;
+        this.execute(executeQuery(con,sql));
+    }
+
+    /**
+     * @param rs ResultSet
+     * @param rowsAsObjects true for rows as {"column":value,...} instead of [value,...]
+     * @throws SQLException if reading rs fails.
+     */
+    public JSunResult(ResultSet rs, boolean rowsAsObjects) throws SQLException {
+        this.rowsAsObjects = rowsAsObjects;
+        this.execute(rs);
+    }
+
+    /**
+     * Reads only the columns selected by projection, the others are never fetched.
+     * @param con Connection
+     * @param sql query
+     * @param rowsAsObjects true for rows as {"column":value,...} instead of [value,...]
+     * @param projection column labels to read, null for all columns.
+     * @throws SQLException if the query fails.
+     */
+    public JSunResult(Connection con, String sql, boolean rowsAsObjects, JSunProjection projection) throws SQLException {
+        this.rowsAsObjects = rowsAsObjects;
+        this.projection = projection;
+        this.execute(executeQuery(con,sql));
+    }
+
+    /**
+     * Reads only the columns selected by projection, the others are never fetched.
+     * @param rs ResultSet
+     * @param rowsAsObjects true for rows as {"column":value,...} instead of [value,...]
+     * @param projection column labels to read, null for all columns.
+     * @throws SQLException if reading rs fails.
+     */
+    public JSunResult(ResultSet rs, boolean rowsAsObjects, JSunProjection projection) throws SQLException {
+        this.rowsAsObjects = rowsAsObjects;
+        this.projection = projection;
+        this.execute(rs);
+    }
+
     private void execute(ResultSet rs) throws SQLException {
         this.executeResultSet(rs);
     }
@@ -47,18 +101,27 @@ public class JSunResult {
     }
 
     private void executeResultSet(ResultSet rs) throws SQLException {
-        ResultSetMetaData meta = rs.getMetaData();
+        long start = JSunMetrics.enabled ? System.nanoTime() : 0;
+        ColumnEncoder[] columns = ColumnEncoder.forColumns(rs.getMetaData(), rowsAsObjects, projection);
 
         while(rs.next()){
-            List<Object> oList = new LinkedList<>();
-            for(int i = 0; i < meta.getColumnCount(); i++){
-                String name = meta.getColumnName(i+1);
-                Object value = rs.getObject(name);
-                oList.add(value);
+            if(rowsAsObjects){
+                JSun row = new JSun();
+                for(ColumnEncoder column : columns){
+                    // Wrapped as a JsonArray wraps the values of a positional row.
+                    row.add(new JSun.KeyValuePair(column.name, JSun.JsonArray.element(column.read(rs)), column.encodedKey));
+                }
+                list.add(row);
+            }else{
+                Object[] values = new Object[columns.length];
+                for(int i = 0; i < columns.length; i++){
+                    values[i] = columns[i].read(rs);
+                }
+                list.add(new JSun(JSun.ARRAY_TAG, values));
             }
-            list.add(new JSun(oList));
         }
         if(closeRs) rs.close();
+        if(JSunMetrics.enabled) JSunMetrics.resultRows(list.size(), System.nanoTime() - start);
     }
 
     public void closeResultSetWhenDone(boolean close){
@@ -69,6 +132,78 @@ public class JSunResult {
         return this.list;
     }
 
+    /**
+     * Writes the result as Json to out as UTF-8, without creating a String.
+     * @param out OutputStream, flushed but not closed.
+     * @throws IOException if out fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        new JSun(list).writeTo(out);
+    }
+
+    /**
+     * Writes the result as Json to channel as UTF-8, without creating a String.
+     * @param channel WritableByteChannel, not closed.
+     * @throws IOException if channel fails.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        new JSun(list).writeTo(channel);
+    }
+
+    /**
+     * Writes the result as Json into buffer as UTF-8, without creating a String.
+     * @param buffer ByteBuffer to write into, from its position.
+     * @throws java.nio.BufferOverflowException if the Json does not fit.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        new JSun(list).writeTo(buffer);
+    }
+
+    /**
+     * Writes the rows as Json Lines (NDJSON), one row per line.
+     * @param out Writer, flushed every flushLines rows and at the end, not closed.
+     * @param flushLines rows written between flushes, 0 to flush at the end only.
+     * @throws IOException if out fails.
+     * @see JSun#writeNdjson(Iterable, Writer, int)
+     */
+    public void writeNdjson(Writer out, int flushLines) throws IOException {
+        JSun.writeNdjson(list, out, flushLines);
+    }
+
+    /**
+     * Writes the rows as Json Lines (NDJSON) to out as UTF-8, one row per line.
+     * @param out OutputStream, flushed every flushLines rows and at the end, not closed.
+     * @param flushLines rows written between flushes, 0 to flush at the end only.
+     * @throws IOException if out fails.
+     */
+    public void writeNdjson(OutputStream out, int flushLines) throws IOException {
+        JSun.writeNdjson(list, out, flushLines);
+    }
+
+    /**
+     * @return the result as UTF-8 encoded Json.
+     */
+    public byte[] toBytes() {
+        return new JSun(list).toBytes();
+    }
+
+    /**
+     * @return the result as CBOR, an array of rows.
+     * @see JSun#toCbor()
+     */
+    public byte[] toCbor() {
+        return new JSun(list).toCbor();
+    }
+
+    /**
+     * Writes the result as CBOR to out, an array of rows.
+     * @param out OutputStream, flushed but not closed.
+     * @throws IOException if out fails.
+     */
+    public void writeCbor(OutputStream out) throws IOException {
+        new JSun(list).writeCbor(out);
+    }
+
     @Override
     public String toString(){
         String str = super.toString();
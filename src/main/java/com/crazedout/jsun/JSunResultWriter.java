@@ -0,0 +1,316 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Writes a ResultSet as Json while the cursor advances.<br>
+ * Produces the same Json as JSunResult.toString(), [[col1,col2,...],...]
+ * or [{"col1":value,...},...] with setRowsAsObjects(true), or one row per line with setNdjson(true),
+ * but never holds more than the current row in memory, or the rows read ahead
+ * with setPipelineRows().
+ * <pre>
+ *     <code>
+ *         JSunResultWriter writer = new JSunResultWriter();
+ *         writer.setFetchSize(1000);
+ *         long rows = writer.write(con, "select * from person", out);
+ *     </code>
+ * </pre>
+ * @author Fredrik Roos 2023
+ */
+public class JSunResultWriter {
+
+    private int fetchSize;
+    private boolean closeRs = true;
+    private boolean rowsAsObjects;
+    private int pipelineRows;
+    private boolean ndjson;
+    private int flushRows;
+    private JSunProjection projection;
+
+    /**
+     * Sets the JDBC fetch size hint, 0 leaves the driver default.
+     * @param fetchSize rows fetched per round trip.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new RuntimeException("Fetch size may not be negative.");
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Write rows as {"column":value,...} instead of [value,...], default false.
+     * @param rowsAsObjects true/false
+     */
+    public void setRowsAsObjects(boolean rowsAsObjects) {
+        this.rowsAsObjects = rowsAsObjects;
+    }
+
+    public boolean isRowsAsObjects() {
+        return this.rowsAsObjects;
+    }
+
+    /**
+     * Writes only the columns selected by projection, by label, default null for all.<br>
+     * The columns are chosen once per result set, and the others are never fetched.
+     * @param projection JSunProjection or null.
+     */
+    public void setProjection(JSunProjection projection) {
+        this.projection = projection;
+    }
+
+    public JSunProjection getProjection() {
+        return this.projection;
+    }
+
+    /**
+     * Write Json Lines (NDJSON), one row per line, instead of one Json array, default false.<br>
+     * Each line is a Json document of its own, so readers can start on the first rows
+     * and a failure partway loses only the rows after it.
+     * @param ndjson true/false
+     */
+    public void setNdjson(boolean ndjson) {
+        this.ndjson = ndjson;
+    }
+
+    public boolean isNdjson() {
+        return this.ndjson;
+    }
+
+    /**
+     * Flushes the output every rows rows, 0, the default, flushes at the end only.
+     * @param rows rows written between flushes.
+     */
+    public void setFlushRows(int rows) {
+        if (rows < 0) throw new RuntimeException("Flush rows may not be negative.");
+        this.flushRows = rows;
+    }
+
+    public int getFlushRows() {
+        return this.flushRows;
+    }
+
+    /**
+     * Reads rows on a thread of its own, up to rows ahead of the Json written,
+     * so the driver fetches while the calling thread encodes.<br>
+     * The rows are kept in reused buffers. The fetch thread waits when they are full,
+     * and is stopped, with the Statement cancelled, if writing fails or the calling
+     * thread is interrupted. A driver that ignores the cancel is waited for 5 seconds,
+     * then the fetch thread is left behind and an SQLTimeoutException is added, suppressed,
+     * to the failure. The ResultSet and Statement are closed as without it.
+     * 0, the default, reads and writes in the calling thread.
+     * @param rows rows to read ahead.
+     */
+    public void setPipelineRows(int rows) {
+        if (rows < 0) throw new RuntimeException("Pipeline rows may not be negative.");
+        this.pipelineRows = rows;
+    }
+
+    public int getPipelineRows() {
+        return this.pipelineRows;
+    }
+
+    /**
+     * Close the ResultSet after writing, default true.
+     * Does not apply to write(Connection, ...) which always closes what it opens.
+     * @param close true/false
+     */
+    public void closeResultSetWhenDone(boolean close) {
+        this.closeRs = close;
+    }
+
+    /**
+     * Executes sql on a forward only, read only Statement and writes the result to out.
+     * @param con Connection
+     * @param sql query
+     * @param out Writer, flushed but not closed.
+     * @return number of rows written.
+     * @throws SQLException if the query fails.
+     * @throws IOException if out fails.
+     */
+    public long write(Connection con, String sql, Writer out) throws SQLException, IOException {
+        return write(con, sql, new JSunWriter.WriterWriter(out));
+    }
+
+    /**
+     * Executes sql and writes the result to out as UTF-8.
+     * @param con Connection
+     * @param sql query
+     * @param out OutputStream, flushed but not closed.
+     * @return number of rows written.
+     * @throws SQLException if the query fails.
+     * @throws IOException if out fails.
+     */
+    public long write(Connection con, String sql, OutputStream out) throws SQLException, IOException {
+        return write(con, sql, new Utf8Writer(out));
+    }
+
+    /**
+     * Executes sql and writes the result to channel as UTF-8.
+     * @param con Connection
+     * @param sql query
+     * @param channel WritableByteChannel, not closed.
+     * @return number of rows written.
+     * @throws SQLException if the query fails.
+     * @throws IOException if channel fails.
+     */
+    public long write(Connection con, String sql, WritableByteChannel channel) throws SQLException, IOException {
+        return write(con, sql, new Utf8Writer(channel));
+    }
+
+    private long write(Connection con, String sql, JSunWriter writer) throws SQLException, IOException {
+        try (Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (fetchSize > 0) stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                return writeRows(rs, writer);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows left in rs to out.
+     * @param rs ResultSet
+     * @param out Writer, flushed but not closed.
+     * @return number of rows written.
+     * @throws SQLException if reading rs fails.
+     * @throws IOException if out fails.
+     */
+    public long write(ResultSet rs, Writer out) throws SQLException, IOException {
+        return write(rs, new JSunWriter.WriterWriter(out));
+    }
+
+    /**
+     * Writes the rows left in rs to out as UTF-8.
+     * @param rs ResultSet
+     * @param out OutputStream, flushed but not closed.
+     * @return number of rows written.
+     * @throws SQLException if reading rs fails.
+     * @throws IOException if out fails.
+     */
+    public long write(ResultSet rs, OutputStream out) throws SQLException, IOException {
+        return write(rs, new Utf8Writer(out));
+    }
+
+    /**
+     * Writes the rows left in rs to channel as UTF-8.
+     * @param rs ResultSet
+     * @param channel WritableByteChannel, not closed.
+     * @return number of rows written.
+     * @throws SQLException if reading rs fails.
+     * @throws IOException if channel fails.
+     */
+    public long write(ResultSet rs, WritableByteChannel channel) throws SQLException, IOException {
+        return write(rs, new Utf8Writer(channel));
+    }
+
+    private long write(ResultSet rs, JSunWriter writer) throws SQLException, IOException {
+        try {
+            if (fetchSize > 0) rs.setFetchSize(fetchSize);
+            return writeRows(rs, writer);
+        } finally {
+            if (closeRs) rs.close();
+        }
+    }
+
+    private long writeRows(ResultSet rs, JSunWriter writer) throws SQLException, IOException {
+        long start = JSunMetrics.enabled ? System.nanoTime() : 0;
+        ColumnEncoder[] columns = ColumnEncoder.forColumns(rs.getMetaData(), rowsAsObjects, projection);
+        long rows = 0;
+        if (!ndjson) writer.write('[');
+        if (pipelineRows > 0) {
+            rows = writePipelined(rs, columns, writer);
+        } else {
+            while (rs.next()) {
+                separate(rows, writer);
+                writeRow(rs, columns, writer);
+                endRow(++rows, writer);
+            }
+        }
+        if (!ndjson) writer.write(']');
+        writer.flush();
+        if (JSunMetrics.enabled) JSunMetrics.resultRows(rows, System.nanoTime() - start);
+        return rows;
+    }
+
+    private long writePipelined(ResultSet rs, ColumnEncoder[] columns, JSunWriter writer) throws SQLException, IOException {
+        ResultPipeline pipeline = new ResultPipeline(rs, columns, pipelineRows);
+        long rows = 0;
+        try {
+            ResultPipeline.Batch batch;
+            while ((batch = pipeline.next()) != null) {
+                for (int row = 0; row < batch.rows; row++) {
+                    separate(rows, writer);
+                    writeRow(batch, row * columns.length, columns, writer);
+                    endRow(++rows, writer);
+                }
+                pipeline.recycle(batch);
+            }
+        } catch (Throwable t) {
+            // A fetch thread that does not stop is reported with the failure, not instead of it.
+            try {
+                pipeline.close(true);
+            } catch (SQLException ex) {
+                t.addSuppressed(ex);
+            }
+            throw t;
+        }
+        pipeline.close(false);
+        return rows;
+    }
+
+    private void separate(long rowsBefore, JSunWriter writer) throws IOException {
+        if (!ndjson && rowsBefore > 0) writer.write(',');
+    }
+
+    private void endRow(long rows, JSunWriter writer) throws IOException {
+        if (ndjson) writer.write('\n');
+        if (flushRows > 0 && rows % flushRows == 0) writer.flush();
+    }
+
+    void writeRow(ResultSet rs, ColumnEncoder[] columns, JSunWriter writer) throws SQLException, IOException {
+        writer.write(rowsAsObjects ? '{' : '[');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) writer.write(',');
+            if (rowsAsObjects) writer.writeKey(columns[i].encodedKey);
+            columns[i].write(rs, writer);
+        }
+        writer.write(rowsAsObjects ? '}' : ']');
+    }
+
+    private void writeRow(ResultPipeline.Batch batch, int cell, ColumnEncoder[] columns, JSunWriter writer) throws IOException {
+        writer.write(rowsAsObjects ? '{' : '[');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) writer.write(',');
+            if (rowsAsObjects) writer.writeKey(columns[i].encodedKey);
+            columns[i].write(batch, cell + i, writer);
+        }
+        writer.write(rowsAsObjects ? '}' : ']');
+    }
+
+}
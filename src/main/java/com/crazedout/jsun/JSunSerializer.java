@@ -0,0 +1,128 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+/**
+ * Base class for the serializers jsun-processor generates for @JSunClass types.<br>
+ * A generated serializer calls the getters of the class directly, so
+ * JSun(Object) needs no reflection for it.<br>
+ * For class com.example.Tutorial the serializer is com.example.Tutorial_JSunSerializer.
+ * @param <T> the @JSunClass type
+ * @author Fredrik Roos 2023
+ */
+public abstract class JSunSerializer<T> {
+
+    /**
+     * Appended to the binary class name to get the serializer class name.
+     */
+    public static final String SUFFIX = "_JSunSerializer";
+
+    private final String[] names;
+    private final EncodedKey[] encodedKeys;
+
+    /**
+     * @param names Json keys, in the order serialize() puts them.
+     */
+    protected JSunSerializer(String... names) {
+        this.names = names;
+        this.encodedKeys = new EncodedKey[names.length];
+        for (int i = 0; i < names.length; i++) encodedKeys[i] = EncodedKey.of(names[i]);
+    }
+
+    /**
+     * Puts the values of obj into json.
+     * @param obj object to be serialized.
+     * @param json JSun to put values into.
+     */
+    public abstract void serialize(T obj, JSun json);
+
+    String[] names() {
+        return names;
+    }
+
+    /**
+     * Puts value under the key names[index].
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value, a List becomes a Json array.
+     */
+    protected final void put(JSun json, int index, Object value) {
+        json.add(new JSun.KeyValuePair(names[index], JSun.toValue(value), encodedKeys[index]));
+    }
+
+    /**
+     * Puts value, unboxed, under the key names[index].
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, int value) {
+        json.add(new JSun.KeyValuePair(names[index], JSun.KeyValuePair.INT, value, encodedKeys[index]));
+    }
+
+    /**
+     * Puts value, unboxed, under the key names[index].
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, long value) {
+        json.add(new JSun.KeyValuePair(names[index], JSun.KeyValuePair.LONG, value, encodedKeys[index]));
+    }
+
+    /**
+     * Puts value, unboxed, under the key names[index].
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, double value) {
+        json.add(new JSun.KeyValuePair(names[index], JSun.KeyValuePair.DOUBLE,
+                Double.doubleToRawLongBits(value), encodedKeys[index]));
+    }
+
+    /**
+     * Puts value under the key names[index], written as Float.toString() does.
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, float value) {
+        put(json, index, (Object) value);
+    }
+
+    /**
+     * Puts value under the key names[index], as a one char string.
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, char value) {
+        put(json, index, (Object) value);
+    }
+
+    /**
+     * Puts value, unboxed, under the key names[index].
+     * @param json JSun to put value into.
+     * @param index key index.
+     * @param value Json value
+     */
+    protected final void put(JSun json, int index, boolean value) {
+        json.add(new JSun.KeyValuePair(names[index], JSun.KeyValuePair.BOOLEAN, value ? 1 : 0, encodedKeys[index]));
+    }
+}
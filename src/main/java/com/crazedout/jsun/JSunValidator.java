@@ -0,0 +1,220 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import javax.script.ScriptException;
+
+/**
+ * Single pass Json validator used by JSun.eval().<br>
+ * Accepts exactly what JSON.parse() accepts, without building any values
+ * and without a ScriptEngine.
+ * @author Fredrik Roos 2023
+ */
+final class JSunValidator {
+
+    private static final int MAX_DEPTH = 1024;
+
+    private final CharSequence json;
+    private final int length;
+    private int pos;
+
+    private JSunValidator(CharSequence json) {
+        this.json = json;
+        this.length = json.length();
+    }
+
+    /**
+     * Validates json.
+     * @param json json string
+     * @throws ScriptException with line and column of the first error.
+     */
+    static void validate(CharSequence json) throws ScriptException {
+        JSunValidator v = new JSunValidator(json);
+        v.skipWhitespace();
+        v.value(0);
+        v.skipWhitespace();
+        if (v.pos < v.length) throw v.error("Unexpected trailing character");
+    }
+
+    private void value(int depth) throws ScriptException {
+        if (pos >= length) throw error("Unexpected end of input");
+        char c = json.charAt(pos);
+        switch (c) {
+            case '{':
+                object(depth + 1);
+                break;
+            case '[':
+                array(depth + 1);
+                break;
+            case '"':
+                string();
+                break;
+            case 't':
+                literal("true");
+                break;
+            case 'f':
+                literal("false");
+                break;
+            case 'n':
+                literal("null");
+                break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) number();
+                else throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private void object(int depth) throws ScriptException {
+        if (depth > MAX_DEPTH) throw error("Nesting too deep");
+        pos++;
+        skipWhitespace();
+        if (pos < length && json.charAt(pos) == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            if (pos >= length || json.charAt(pos) != '"') throw error("Expected string key");
+            string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            value(depth);
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = json.charAt(pos++);
+            if (c == '}') return;
+            if (c != ',') throw error(--pos, "Expected ',' or '}'");
+            skipWhitespace();
+        }
+    }
+
+    private void array(int depth) throws ScriptException {
+        if (depth > MAX_DEPTH) throw error("Nesting too deep");
+        pos++;
+        skipWhitespace();
+        if (pos < length && json.charAt(pos) == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            value(depth);
+            skipWhitespace();
+            if (pos >= length) throw error("Unexpected end of input");
+            char c = json.charAt(pos++);
+            if (c == ']') return;
+            if (c != ',') throw error(--pos, "Expected ',' or ']'");
+            skipWhitespace();
+        }
+    }
+
+    private void string() throws ScriptException {
+        int start = pos++;
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') return;
+            if (c < 0x20) throw error(pos - 1, "Control character in string");
+            if (c == '\\') {
+                if (pos >= length) break;
+                switch (json.charAt(pos++)) {
+                    case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+                        break;
+                    case 'u':
+                        for (int i = 0; i < 4; i++) {
+                            if (pos >= length || Character.digit(json.charAt(pos), 16) < 0) {
+                                throw error("Invalid unicode escape");
+                            }
+                            pos++;
+                        }
+                        break;
+                    default:
+                        throw error(pos - 1, "Invalid escape character");
+                }
+            }
+        }
+        throw error(start, "Unterminated string");
+    }
+
+    private void number() throws ScriptException {
+        int start = pos;
+        if (json.charAt(pos) == '-') pos++;
+        if (pos < length && json.charAt(pos) == '0') {
+            pos++;
+        } else if (digits() == 0) {
+            throw error(start, "Invalid number");
+        }
+        if (pos < length && json.charAt(pos) == '.') {
+            pos++;
+            if (digits() == 0) throw error(start, "Invalid number");
+        }
+        if (pos < length && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < length && (json.charAt(pos) == '+' || json.charAt(pos) == '-')) pos++;
+            if (digits() == 0) throw error(start, "Invalid number");
+        }
+    }
+
+    private int digits() {
+        int start = pos;
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c < '0' || c > '9') break;
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private void literal(String literal) throws ScriptException {
+        int n = literal.length();
+        if (pos + n > length) throw error("Invalid literal");
+        for (int i = 0; i < n; i++) {
+            if (json.charAt(pos + i) != literal.charAt(i)) throw error("Invalid literal");
+        }
+        pos += n;
+    }
+
+    private void expect(char c) throws ScriptException {
+        if (pos >= length || json.charAt(pos) != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    private ScriptException error(String message) {
+        return error(pos, message);
+    }
+
+    private ScriptException error(int at, String message) {
+        int line = 1;
+        int column = 1;
+        for (int i = 0; i < at && i < length; i++) {
+            if (json.charAt(i) == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+        return new ScriptException(message + " at offset " + at + ".", null, line, column);
+    }
+}
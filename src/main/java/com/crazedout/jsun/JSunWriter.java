@@ -0,0 +1,621 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Writes JSun objects as Json, token by token, straight to a sink.<br>
+ * Subclasses decide where the characters go.
+ * @author Fredrik Roos 2023
+ */
+abstract class JSunWriter {
+
+    // For each ASCII char: 0 if it is written as is, else the char after the backslash, 'u' for a four digit hex escape.
+    private static final byte[] ESCAPES = new byte[128];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // Strings this long are checked eight chars at a time, BLOCK chars per round, before the char loop.
+    private static final int BLOCK_MIN = 64;
+    private static final int BLOCK = 1024;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = ONES * 0x80;
+
+    static {
+        for (int c = 0; c < 0x20; c++) ESCAPES[c] = 'u';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    abstract void write(char c) throws IOException;
+
+    abstract void write(String s) throws IOException;
+
+    abstract void write(String s, int start, int end) throws IOException;
+
+    abstract void write(char[] buf, int off, int len) throws IOException;
+
+    private final char[] digits = new char[DoubleFormat.MAX_CHARS];
+    // Low bytes of a block of chars and the same bytes as longs, allocated on the first long string.
+    private byte[] block;
+    private long[] words;
+    private LongBuffer blockWords;
+    // Stamp of the top level render this writer is part of, 0 if none.
+    long stamp;
+    // Set when a value JSun can not watch, like a primitive array, is written in the current JSun.
+    boolean opaque;
+
+    void flush() throws IOException {
+    }
+
+    /**
+     * @return chars written so far, -1 if the sink does not tell.
+     */
+    long charsWritten() {
+        return -1;
+    }
+
+    /**
+     * @return UTF-8 bytes written so far, -1 for char sinks.
+     */
+    long bytesWritten() {
+        return -1;
+    }
+
+    /**
+     * Writes jsun as {"key":value,...} or [value,...] if it holds a list.
+     * @param jsun JSun to write
+     * @throws IOException if the sink fails.
+     */
+    void writeJSun(JSun jsun) throws IOException {
+        KeyValueList pairs = (KeyValueList) jsun.getKeyPairList();
+        boolean outer = opaque;
+        opaque = false;
+        int size = pairs.size();
+        if (size > 0 && pairs.get(0).name.equals(JSun.ARRAY_TAG)) {
+            if (size == 1) {
+                writeValue(pairs.get(0));
+            } else {
+                write('[');
+                writePairs(pairs);
+                write(']');
+            }
+        } else {
+            write('{');
+            writePairs(pairs);
+            write('}');
+        }
+        pairs.rendered(stamp, opaque);
+        opaque |= outer;
+    }
+
+    private void writePairs(List<JSun.KeyValuePair> pairs) throws IOException {
+        boolean first = true;
+        for (JSun.KeyValuePair pair : pairs) {
+            if (!first) write(',');
+            first = false;
+            if (pair.encodedKey != null) {
+                writeKey(pair.encodedKey);
+            } else if (!pair.name.equals(JSun.ARRAY_TAG)) {
+                writeString(pair.name);
+                write(':');
+            }
+            writeValue(pair);
+        }
+    }
+
+    private void writeValue(JSun.KeyValuePair pair) throws IOException {
+        switch (pair.kind) {
+            case JSun.KeyValuePair.INT:
+            case JSun.KeyValuePair.LONG:
+                writeLong(pair.bits);
+                break;
+            case JSun.KeyValuePair.DOUBLE:
+                writeDouble(Double.longBitsToDouble(pair.bits));
+                break;
+            case JSun.KeyValuePair.BOOLEAN:
+                writeBoolean(pair.bits != 0);
+                break;
+            default:
+                writeValue(pair.value);
+        }
+    }
+
+    void writeArray(JSun.JsonArray array) throws IOException {
+        write('[');
+        if (JSunParallel.isParallel(array.arrList.size())) {
+            String[] chunks = JSunParallel.render(array.arrList, this);
+            for (int i = 0; i < chunks.length; i++) {
+                if (i > 0) write(',');
+                write(chunks[i]);
+            }
+            write(']');
+            return;
+        }
+        boolean first = true;
+        for (Object o : array.arrList) {
+            if (!first) write(',');
+            first = false;
+            writeValue(o);
+        }
+        write(']');
+    }
+
+    void writeValue(Object value) throws IOException {
+        if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof JSun) {
+            String json = stamp != 0 ? ((JSun) value).cachedJson(stamp) : null;
+            if (json != null) write(json);
+            else writeJSun((JSun) value);
+        } else if (value instanceof JSun.JsonArray) {
+            writeArray((JSun.JsonArray) value);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            writeString(value.toString());
+        } else if (value instanceof int[]) {
+            opaque = true;
+            writeInts((int[]) value);
+        } else if (value instanceof long[]) {
+            opaque = true;
+            writeLongs((long[]) value);
+        } else if (value instanceof double[]) {
+            opaque = true;
+            writeDoubles((double[]) value);
+        } else if (value instanceof boolean[]) {
+            opaque = true;
+            writeBooleans((boolean[]) value);
+        } else {
+            if (value != null && !(value instanceof BigDecimal) && !(value instanceof BigInteger)) opaque = true;
+            write(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Writes obj straight from its JSunPlan, the same Json as new JSun(obj) gives,
+     * without building the JSun.<br>
+     * Primitive getters are read unboxed and Lists are walked in place,
+     * so a plain bean is written without allocating.
+     * @param obj object to write
+     * @throws IOException if the sink fails.
+     */
+    void writeObject(Object obj) throws IOException {
+        writeObject(obj, null);
+    }
+
+    /**
+     * Writes only the fields of projection of obj, null for all.
+     */
+    void writeObject(Object obj, JSunProjection projection) throws IOException {
+        JSunPlan plan = JSunProjection.plan(obj.getClass(), projection);
+        JSunPlan.Property[] properties = plan.properties;
+        write('{');
+        boolean first = true;
+        for (int i = 0; i < properties.length; i++) {
+            JSunPlan.Property property = properties[i];
+            long bits = 0;
+            Object value = null;
+            try {
+                if (property.kind == JSun.KeyValuePair.OBJECT) value = property.get(obj);
+                else bits = property.bits(obj);
+            } catch (Exception ex) {
+                // Left out, as JSun(Object) does.
+                ex.printStackTrace();
+                continue;
+            }
+            if (!first) write(',');
+            first = false;
+            writeKey(property.encodedKey);
+            switch (property.kind) {
+                case JSun.KeyValuePair.INT:
+                case JSun.KeyValuePair.LONG:
+                    writeLong(bits);
+                    break;
+                case JSun.KeyValuePair.DOUBLE:
+                    writeDouble(Double.longBitsToDouble(bits));
+                    break;
+                case JSun.KeyValuePair.BOOLEAN:
+                    writeBoolean(bits != 0);
+                    break;
+                default:
+                    if (value instanceof List<?>) writeList((List<?>) value, plan.projection(i));
+                    else writeValue(value);
+            }
+        }
+        write('}');
+    }
+
+    /**
+     * Writes a List the way a JsonArray of it is written.
+     */
+    private void writeList(List<?> list, JSunProjection projection) throws IOException {
+        write('[');
+        if (list instanceof RandomAccess) {
+            for (int i = 0, n = list.size(); i < n; i++) {
+                if (i > 0) write(',');
+                writeElement(list.get(i), projection);
+            }
+        } else {
+            boolean first = true;
+            for (Object o : list) {
+                if (!first) write(',');
+                first = false;
+                writeElement(o, projection);
+            }
+        }
+        write(']');
+    }
+
+    /**
+     * Writes items as Json Lines, each followed by a newline, as JsonArray elements are written.
+     * @param items items to write
+     * @param flushLines lines written between flushes, 0 to flush at the end only.
+     * @return number of lines written.
+     * @throws IOException if the sink fails.
+     */
+    long writeLines(Iterable<?> items, int flushLines) throws IOException {
+        long lines = 0;
+        for (Object item : items) {
+            writeElement(item, null);
+            write('\n');
+            lines++;
+            if (flushLines > 0 && lines % flushLines == 0) flush();
+        }
+        flush();
+        return lines;
+    }
+
+    /**
+     * Writes o as JSun.JsonArray.element(o) would be written.
+     */
+    private void writeElement(Object o, JSunProjection projection) throws IOException {
+        if (o == null || o instanceof String || o instanceof JSun || o instanceof Number
+                || o instanceof Boolean || o instanceof Character || JSun.JsonArray.isPrimitiveArray(o)) {
+            writeValue(o);
+        } else {
+            writeObject(o, projection);
+        }
+    }
+
+    /**
+     * Writes v without creating a String.
+     * @param v value
+     * @throws IOException if the sink fails.
+     */
+    void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            write("-9223372036854775808");
+            return;
+        }
+        char[] buf = digits;
+        int pos = buf.length;
+        boolean negative = v < 0;
+        if (negative) v = -v;
+        do {
+            long q = v / 10;
+            buf[--pos] = (char) ('0' + (v - q * 10));
+            v = q;
+        } while (v != 0);
+        if (negative) buf[--pos] = '-';
+        write(buf, pos, buf.length - pos);
+    }
+
+    /**
+     * Writes v with the fewest digits that read back as v, without creating a String,
+     * or null if v is NaN or infinite since Json has no such numbers.
+     * @param v value
+     * @throws IOException if the sink fails.
+     */
+    void writeDouble(double v) throws IOException {
+        if (Double.isNaN(v) || Double.isInfinite(v)) write("null");
+        else write(digits, 0, DoubleFormat.format(v, digits));
+    }
+
+    /**
+     * Writes v as Float.toString() does, or null if v is NaN or infinite.
+     * @param v value
+     * @throws IOException if the sink fails.
+     */
+    void writeFloat(float v) throws IOException {
+        if (Float.isNaN(v) || Float.isInfinite(v)) write("null");
+        else write(Float.toString(v));
+    }
+
+    void writeBoolean(boolean v) throws IOException {
+        write(v ? "true" : "false");
+    }
+
+    void writeInts(int[] values) throws IOException {
+        write('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) write(',');
+            writeLong(values[i]);
+        }
+        write(']');
+    }
+
+    void writeLongs(long[] values) throws IOException {
+        write('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) write(',');
+            writeLong(values[i]);
+        }
+        write(']');
+    }
+
+    void writeDoubles(double[] values) throws IOException {
+        write('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) write(',');
+            writeDouble(values[i]);
+        }
+        write(']');
+    }
+
+    void writeBooleans(boolean[] values) throws IOException {
+        write('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) write(',');
+            writeBoolean(values[i]);
+        }
+        write(']');
+    }
+
+    /**
+     * Writes a pre-encoded "name":
+     * @param key encoded key
+     * @throws IOException if the sink fails.
+     */
+    void writeKey(EncodedKey key) throws IOException {
+        write(key.chars);
+    }
+
+    /**
+     * Writes s as a quoted Json string.<br>
+     * Runs of chars that need no escaping are written in one call,
+     * only quote, backslash and control chars take the slow path.
+     * A long string with nothing to escape is found by plain() and written in one call.
+     * @param s string
+     * @throws IOException if the sink fails.
+     */
+    void writeString(String s) throws IOException {
+        write('"');
+        int length = s.length();
+        if (length >= BLOCK_MIN && plain(s, length)) {
+            write(s);
+            write('"');
+            return;
+        }
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 128 && ESCAPES[c] != 0) {
+                if (i > run) write(s, run, i);
+                writeEscape(c);
+                run = i + 1;
+            }
+        }
+        if (run == 0) write(s);
+        else if (run < length) write(s, run, length);
+        write('"');
+    }
+
+    /**
+     * Tests eight chars per step, as the bytes of a long, for quote, backslash and control chars.<br>
+     * Only the low byte of each char is copied, so a char above 0xFF may look like one of them.
+     * That sends the string to the char loop, which sorts it out.
+     * @param s string
+     * @param length s.length()
+     * @return true if no char in s needs escaping.
+     */
+    @SuppressWarnings("deprecation")
+    private boolean plain(String s, int length) {
+        if (block == null) {
+            block = new byte[BLOCK];
+            words = new long[BLOCK / 8];
+            blockWords = ByteBuffer.wrap(block).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        byte[] bytes = block;
+        long[] longs = words;
+        for (int start = 0; start < length; start += BLOCK) {
+            int end = Math.min(length, start + BLOCK);
+            // String.getBytes(int, int, byte[], int) keeps the low byte of each char, which is all this needs.
+            s.getBytes(start, end, bytes, 0);
+            int count = (end - start + 7) >> 3;
+            for (int i = end - start; i < count << 3; i++) bytes[i] = ' ';
+            blockWords.clear();
+            blockWords.get(longs, 0, count);
+            long found = 0;
+            for (int i = 0; i < count; i++) {
+                long x = longs[i];
+                long quote = x ^ (ONES * '"');
+                long backslash = x ^ (ONES * '\\');
+                // A byte has its high bit set here if it is below 0x20, or is 0 after the xor.
+                found |= (x - ONES * 0x20) & ~x | (quote - ONES) & ~quote | (backslash - ONES) & ~backslash;
+            }
+            if ((found & HIGHS) != 0) return false;
+        }
+        return true;
+    }
+
+    private void writeEscape(char c) throws IOException {
+        char escape = (char) ESCAPES[c];
+        write('\\');
+        write(escape);
+        if (escape == 'u') {
+            write('0');
+            write('0');
+            write(HEX[c >> 4]);
+            write(HEX[c & 0xF]);
+        }
+    }
+
+    /**
+     * Quotes and escapes s.
+     * @param s string
+     * @return s as a Json string.
+     */
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        try {
+            new StringBuilderWriter(sb).writeString(s);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes to a StringBuilder, used by JSun.toString().<br>
+     * Can be pointed at another StringBuilder, so WriterPool can keep one per thread.
+     */
+    static final class StringBuilderWriter extends JSunWriter {
+        private StringBuilder out;
+        private int start;
+
+        StringBuilderWriter(StringBuilder out) {
+            reset(out);
+        }
+
+        /**
+         * Points a pooled writer at out, null to let go of the last one.
+         */
+        void reset(StringBuilder out) {
+            this.out = out;
+            this.start = out != null ? out.length() : 0;
+            this.stamp = 0;
+            this.opaque = false;
+        }
+
+        StringBuilder builder() {
+            return out;
+        }
+
+        @Override
+        long charsWritten() {
+            return out.length() - start;
+        }
+
+        @Override
+        void write(char c) {
+            out.append(c);
+        }
+
+        @Override
+        void write(String s) {
+            out.append(s);
+        }
+
+        @Override
+        void write(String s, int start, int end) {
+            out.append(s, start, end);
+        }
+
+        @Override
+        void write(char[] buf, int off, int len) {
+            out.append(buf, off, len);
+        }
+    }
+
+    /**
+     * Writes to a java.io.Writer without creating substrings.
+     */
+    static final class WriterWriter extends JSunWriter {
+        private final Writer out;
+
+        WriterWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        void write(char c) throws IOException {
+            out.write(c);
+        }
+
+        @Override
+        void write(String s) throws IOException {
+            out.write(s);
+        }
+
+        @Override
+        void write(String s, int start, int end) throws IOException {
+            out.write(s, start, end - start);
+        }
+
+        @Override
+        void write(char[] buf, int off, int len) throws IOException {
+            out.write(buf, off, len);
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes to any Appendable.
+     */
+    static final class AppendableWriter extends JSunWriter {
+        private final Appendable out;
+
+        AppendableWriter(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        void write(char c) throws IOException {
+            out.append(c);
+        }
+
+        @Override
+        void write(String s) throws IOException {
+            out.append(s);
+        }
+
+        @Override
+        void write(String s, int start, int end) throws IOException {
+            out.append(s, start, end);
+        }
+
+        @Override
+        void write(char[] buf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) out.append(buf[i]);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Insertion ordered, array backed list of key/value pairs with a hash index on the keys.<br>
+ * Small lists are searched linearly, the index is built once the list grows past LINEAR_LIMIT.
+ * ARRAY_TAG pairs are never indexed since a JSun may hold several of them.<br>
+ * A list knows the lists that hold its JSun, and a change marks them dirty as well,
+ * so a JSun tells whether anything in it changed without walking what it holds.
+ * @author Fredrik Roos 2023
+ */
+final class KeyValueList extends AbstractList<JSun.KeyValuePair> implements RandomAccess {
+
+    private static final int LINEAR_LIMIT = 8;
+    private static final JSun.KeyValuePair[] EMPTY = new JSun.KeyValuePair[0];
+
+    private JSun.KeyValuePair[] pairs = EMPTY;
+    private int size;
+    // Open addressing, a slot holds position + 1, 0 is empty.
+    private int[] index;
+    // Set by every change, here or in a JSun held, cleared by the first render after it,
+    // which records its stamp. A dirty list always has dirty parents.
+    private boolean dirty;
+    private long renderStamp;
+    // Lists holding the JSun of this list, null, one WeakReference or an array of them.
+    // A list the JSun was removed from stays, it only costs a needless render there.
+    private Object parents;
+    private WeakReference<KeyValueList> self;
+
+    @Override
+    public JSun.KeyValuePair get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        return pairs[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(JSun.KeyValuePair pair) {
+        if (size == pairs.length) pairs = Arrays.copyOf(pairs, Math.max(LINEAR_LIMIT, size * 2));
+        pairs[size++] = pair;
+        modCount++;
+        changed();
+        adopt(pair);
+        if (index != null) {
+            if (size * 2 > index.length) rebuildIndex();
+            else indexPair(size - 1);
+        } else if (size > LINEAR_LIMIT) {
+            rebuildIndex();
+        }
+        return true;
+    }
+
+    @Override
+    public JSun.KeyValuePair set(int i, JSun.KeyValuePair pair) {
+        JSun.KeyValuePair old = get(i);
+        pairs[i] = pair;
+        changed();
+        adopt(pair);
+        if (index != null) rebuildIndex();
+        return old;
+    }
+
+    @Override
+    public JSun.KeyValuePair remove(int i) {
+        JSun.KeyValuePair old = get(i);
+        System.arraycopy(pairs, i + 1, pairs, i, size - i - 1);
+        pairs[--size] = null;
+        modCount++;
+        changed();
+        if (index != null) rebuildIndex();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(pairs, 0, size, null);
+        size = 0;
+        index = null;
+        modCount++;
+        changed();
+    }
+
+    /**
+     * @param stamp render stamp
+     * @return true if the pairs, or any JSun they hold, changed, or were rendered after a change, since stamp.
+     */
+    boolean changedSince(long stamp) {
+        return dirty || renderStamp > stamp;
+    }
+
+    /**
+     * Called when the pairs are rendered under stamp.
+     * @param stamp render stamp, 0 for renders outside the cache.
+     * @param opaque true if a value JSun can not watch, like a primitive array, was written,
+     *               the list then stays dirty.
+     */
+    void rendered(long stamp, boolean opaque) {
+        if (dirty && stamp != 0 && !opaque) {
+            dirty = false;
+            renderStamp = stamp;
+        }
+    }
+
+    /**
+     * Marks this list and the lists holding it dirty.
+     * Stops at a dirty list, its parents are dirty already.
+     */
+    private void changed() {
+        if (dirty) return;
+        dirty = true;
+        Object refs = parents;
+        if (refs instanceof WeakReference) {
+            changed((WeakReference<?>) refs);
+        } else if (refs != null) {
+            for (WeakReference<?> ref : (WeakReference<?>[]) refs) changed(ref);
+        }
+    }
+
+    private static void changed(WeakReference<?> ref) {
+        KeyValueList parent = (KeyValueList) ref.get();
+        if (parent != null) parent.changed();
+    }
+
+    /**
+     * Links the JSun held by pair, directly or in arrays, to this list.
+     */
+    private void adopt(JSun.KeyValuePair pair) {
+        if (pair.kind == JSun.KeyValuePair.OBJECT) adopt(pair.value);
+    }
+
+    private void adopt(Object value) {
+        if (value instanceof JSun) {
+            ((KeyValueList) ((JSun) value).getKeyPairList()).addParent(this);
+        } else if (value instanceof JSun.JsonArray) {
+            for (Object o : ((JSun.JsonArray) value).arrList) {
+                if (o instanceof JSun || o instanceof JSun.JsonArray) adopt(o);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addParent(KeyValueList parent) {
+        if (parent.self == null) parent.self = new WeakReference<>(parent);
+        WeakReference<KeyValueList> ref = parent.self;
+        Object refs = parents;
+        if (refs == null || refs == ref) {
+            parents = ref;
+            return;
+        }
+        if (refs instanceof WeakReference) {
+            WeakReference<KeyValueList> old = (WeakReference<KeyValueList>) refs;
+            parents = old.get() == null ? ref : refs(old, ref);
+            return;
+        }
+        WeakReference<KeyValueList>[] array = (WeakReference<KeyValueList>[]) refs;
+        int live = 0;
+        for (WeakReference<KeyValueList> r : array) {
+            if (r == ref) return;
+            if (r.get() != null) array[live++] = r;
+        }
+        WeakReference<KeyValueList>[] grown = Arrays.copyOf(array, live + 1);
+        grown[live] = ref;
+        parents = grown;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeakReference<KeyValueList>[] refs(WeakReference<KeyValueList> a, WeakReference<KeyValueList> b) {
+        return (WeakReference<KeyValueList>[]) new WeakReference<?>[]{a, b};
+    }
+
+    /**
+     * Finds the pair named name.
+     * @param name Json key
+     * @return the pair or null.
+     */
+    JSun.KeyValuePair find(String name) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (pairs[i].name.equals(name)) return pairs[i];
+            }
+            return null;
+        }
+        int mask = index.length - 1;
+        for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            JSun.KeyValuePair pair = pairs[index[slot] - 1];
+            if (pair.name.equals(name)) return pair;
+        }
+        return null;
+    }
+
+    private void rebuildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(size, LINEAR_LIMIT) * 4 - 1);
+        index = new int[capacity];
+        for (int i = 0; i < size; i++) indexPair(i);
+    }
+
+    private void indexPair(int i) {
+        String name = pairs[i].name;
+        if (name.equals(JSun.ARRAY_TAG)) return;
+        int mask = index.length - 1;
+        int slot = hash(name) & mask;
+        while (index[slot] != 0) {
+            // Keep the first pair of a name, as find() on the linear path does.
+            if (pairs[index[slot] - 1].name.equals(name)) return;
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = i + 1;
+    }
+
+    /**
+     * Spreads String.hashCode(), which is near sequential for keys like key1, key2...
+     * and would otherwise pile up in one long probe run.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,190 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.InterruptedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a ResultSet on a thread of its own into a ring of reusable row batches,
+ * so the JDBC driver fetches the next rows while the caller encodes the last ones.<br>
+ * The ring holds BATCHES batches. When the caller falls behind, the fetch thread
+ * waits for a batch to be recycled, so at most the ring is buffered.<br>
+ * The Statement is looked up before the fetch thread starts, after that only the
+ * fetch thread touches the ResultSet until close() returns. close() interrupts it
+ * and cancels the Statement if the rows were not all written, and gives up on it
+ * after CLOSE_TIMEOUT_MILLIS if the driver still does not return.
+ * @author Fredrik Roos 2023
+ */
+final class ResultPipeline {
+
+    static final int BATCHES = 4;
+    static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final Batch END = new Batch(0, 0);
+
+    /**
+     * Column values of up to capacity rows, cell (row, column) at row * columns + column.<br>
+     * Primitive columns are kept unboxed in bits, the others in values.
+     */
+    static final class Batch {
+        final int capacity;
+        final long[] bits;
+        final boolean[] nulls;
+        final Object[] values;
+        int rows;
+
+        Batch(int capacity, int columns) {
+            this.capacity = capacity;
+            this.bits = new long[capacity * columns];
+            this.nulls = new boolean[capacity * columns];
+            this.values = new Object[capacity * columns];
+        }
+    }
+
+    private final ResultSet rs;
+    private final Statement stmt;
+    private final ColumnEncoder[] columns;
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+    // One more than BATCHES so END always fits.
+    private final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(BATCHES + 1);
+    private final Thread fetcher;
+    private volatile boolean cancelled;
+    // Set by the fetch thread before it queues END.
+    private Throwable failure;
+
+    /**
+     * Starts fetching.
+     * @param rs ResultSet, positioned before the first row to read.
+     * @param columns encoders of rs.
+     * @param bufferRows rows to read ahead, split over BATCHES batches.
+     */
+    ResultPipeline(ResultSet rs, ColumnEncoder[] columns, int bufferRows) {
+        this.rs = rs;
+        this.stmt = statement(rs);
+        this.columns = columns;
+        int batchRows = Math.max(1, bufferRows / BATCHES);
+        for (int i = 0; i < BATCHES; i++) free.add(new Batch(batchRows, columns.length));
+        this.fetcher = new Thread(this::fetch, "JSunResultWriter-fetch");
+        this.fetcher.setDaemon(true);
+        this.fetcher.start();
+    }
+
+    private static Statement statement(ResultSet rs) {
+        try {
+            return rs.getStatement();
+        } catch (SQLException | RuntimeException ex) {
+            // Nothing to cancel then, the interrupt still stops the fetch thread between rows.
+            return null;
+        }
+    }
+
+    private void fetch() {
+        try {
+            while (!cancelled) {
+                Batch batch = free.take();
+                batch.rows = 0;
+                boolean more = true;
+                while (batch.rows < batch.capacity && (more = rs.next())) {
+                    int cell = batch.rows * columns.length;
+                    for (ColumnEncoder column : columns) column.fetch(rs, batch, cell++);
+                    batch.rows++;
+                }
+                if (batch.rows > 0) full.put(batch);
+                if (!more) break;
+            }
+        } catch (InterruptedException ex) {
+            // Cancelled by close().
+        } catch (Throwable t) {
+            failure = t;
+        }
+        full.offer(END);
+    }
+
+    /**
+     * Waits for the next batch.
+     * @return the next batch, give it back with recycle(), or null after the last row.
+     * @throws SQLException if reading the ResultSet failed.
+     * @throws InterruptedIOException if the calling thread is interrupted.
+     */
+    Batch next() throws SQLException, InterruptedIOException {
+        Batch batch;
+        try {
+            batch = full.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rows.");
+        }
+        if (batch != END) return batch;
+        full.offer(END);
+        Throwable t = failure;
+        if (t == null) return null;
+        if (t instanceof SQLException) throw (SQLException) t;
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * Gives batch back to the fetch thread. Its values are cleared, so the rows are not kept alive.
+     */
+    void recycle(Batch batch) {
+        Arrays.fill(batch.values, 0, batch.rows * columns.length, null);
+        free.offer(batch);
+    }
+
+    /**
+     * Stops the fetch thread and waits up to CLOSE_TIMEOUT_MILLIS for it, so the ResultSet may be closed.
+     * @param cancel true if not all rows were taken, the fetch thread is
+     *               interrupted and the Statement, if any, is cancelled.
+     * @throws SQLTimeoutException if the fetch thread is still in the driver after the timeout.
+     */
+    void close(boolean cancel) throws SQLTimeoutException {
+        if (cancel) {
+            cancelled = true;
+            fetcher.interrupt();
+            try {
+                if (stmt != null) stmt.cancel();
+            } catch (SQLException | RuntimeException ex) {
+                // Best effort, the interrupt still stops the fetch thread between rows.
+            }
+        }
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_MILLIS * 1_000_000;
+        long left;
+        while (fetcher.isAlive() && (left = deadline - System.nanoTime()) > 0) {
+            try {
+                fetcher.join(Math.max(1, left / 1_000_000));
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (fetcher.isAlive()) {
+            cancelled = true;
+            fetcher.interrupt();
+            throw new SQLTimeoutException("The driver did not return within " + CLOSE_TIMEOUT_MILLIS
+                    + " ms of being cancelled, the fetch thread is left to finish on its own.");
+        }
+    }
+}
@@ -0,0 +1,244 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Writes Json as UTF-8 bytes without going through String.<br>
+ * Bytes are encoded into a byte[], which either grows (toBytes) or is
+ * drained to an OutputStream, a WritableByteChannel or a ByteBuffer when full.
+ * ASCII runs are copied with one check per run, pre-encoded keys as is.
+ * @author Fredrik Roos 2023
+ */
+final class Utf8Writer extends JSunWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    // Chars encoded per capacity check, at most 3 bytes each.
+    private static final int CHUNK = BUFFER_SIZE / 3 - 1;
+
+    private byte[] buf;
+    private int pos;
+    // Bytes drained to the sink so far.
+    private long drained;
+    private OutputStream stream;
+    private WritableByteChannel channel;
+    private ByteBuffer target;
+
+    /**
+     * Writes to a growable byte[].
+     */
+    Utf8Writer() {
+        this.buf = new byte[256];
+        this.stream = null;
+        this.channel = null;
+        this.target = null;
+    }
+
+    Utf8Writer(OutputStream stream) {
+        this(stream, null, null);
+    }
+
+    Utf8Writer(WritableByteChannel channel) {
+        this(null, channel, null);
+    }
+
+    /**
+     * Writes into target, BufferOverflowException if it does not fit.
+     */
+    Utf8Writer(ByteBuffer target) {
+        this(null, null, target);
+    }
+
+    /**
+     * Writes to the one non null sink, or to a growable byte[] if all are null.
+     */
+    Utf8Writer(OutputStream stream, WritableByteChannel channel, ByteBuffer target) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.stream = stream;
+        this.channel = channel;
+        this.target = target;
+    }
+
+    /**
+     * Points a pooled writer at one sink, or at its own growable byte[] if all are null,
+     * keeping the byte[] it has.
+     */
+    void reset(OutputStream stream, WritableByteChannel channel, ByteBuffer target) {
+        this.stream = stream;
+        this.channel = channel;
+        this.target = target;
+        this.pos = 0;
+        this.drained = 0;
+        this.stamp = 0;
+        this.opaque = false;
+    }
+
+    int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * @return the bytes written so far.
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private boolean growable() {
+        return stream == null && channel == null && target == null;
+    }
+
+    private void require(int n) throws IOException {
+        if (pos + n <= buf.length) return;
+        if (!growable()) {
+            drain();
+            if (n <= buf.length) return;
+        }
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+    }
+
+    private void drain() throws IOException {
+        if (pos == 0) return;
+        if (stream != null) {
+            stream.write(buf, 0, pos);
+        } else if (channel != null) {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, pos);
+            while (bb.hasRemaining()) channel.write(bb);
+        } else if (target != null) {
+            target.put(buf, 0, pos);
+        } else {
+            return;
+        }
+        drained += pos;
+        pos = 0;
+    }
+
+    @Override
+    long bytesWritten() {
+        return drained + pos;
+    }
+
+    @Override
+    void flush() throws IOException {
+        drain();
+        if (stream != null) stream.flush();
+    }
+
+    @Override
+    void write(char c) throws IOException {
+        if (c < 0x80) {
+            if (pos == buf.length) require(1);
+            buf[pos++] = (byte) c;
+        } else {
+            require(3);
+            pos = encode(c, buf, pos);
+        }
+    }
+
+    @Override
+    void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    @Override
+    void write(String s, int start, int end) throws IOException {
+        while (start < end) {
+            int stop = Math.min(end, start + CHUNK);
+            // Keep surrogate pairs in one chunk.
+            if (stop < end && Character.isHighSurrogate(s.charAt(stop - 1))) stop++;
+            require((stop - start) * 3);
+            byte[] b = buf;
+            int p = pos;
+            int i = start;
+            while (i < stop) {
+                char c = s.charAt(i++);
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(s.charAt(i))) {
+                    p = encode(Character.toCodePoint(c, s.charAt(i++)), b, p);
+                } else {
+                    p = encode(c, b, p);
+                }
+            }
+            pos = p;
+            start = stop;
+        }
+    }
+
+    @Override
+    void write(char[] chars, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            int stop = Math.min(end, off + CHUNK);
+            if (stop < end && Character.isHighSurrogate(chars[stop - 1])) stop++;
+            require((stop - off) * 3);
+            byte[] b = buf;
+            int p = pos;
+            int i = off;
+            while (i < stop) {
+                char c = chars[i++];
+                if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(chars[i])) {
+                    p = encode(Character.toCodePoint(c, chars[i++]), b, p);
+                } else {
+                    p = encode(c, b, p);
+                }
+            }
+            pos = p;
+            off = stop;
+        }
+    }
+
+    @Override
+    void writeKey(EncodedKey key) throws IOException {
+        byte[] bytes = key.bytes;
+        require(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /**
+     * Encodes a code point, lone surrogates become '?'.
+     */
+    static int encode(int cp, byte[] b, int p) {
+        if (cp < 0x80) {
+            b[p++] = (byte) cp;
+        } else if (cp < 0x800) {
+            b[p++] = (byte) (0xC0 | (cp >> 6));
+            b[p++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+            b[p++] = '?';
+        } else if (cp < 0x10000) {
+            b[p++] = (byte) (0xE0 | (cp >> 12));
+            b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            b[p++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            b[p++] = (byte) (0xF0 | (cp >> 18));
+            b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            b[p++] = (byte) (0x80 | (cp & 0x3F));
+        }
+        return p;
+    }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) 2023 CrazedoutSoft / Fredrik Roos
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is furnished
+// to do so, subject to the following conditions:
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+// INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+// PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+// HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+// OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+// OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+// info@crazedout.com
+package com.crazedout.jsun;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * One StringBuilder, one char writer, one UTF-8 writer and one CBOR writer per thread,
+ * reused by every JSun write on that thread so steady state writes
+ * allocate no buffers.<br>
+ * A write that starts while the pooled writer is busy, e.g. a getter that
+ * serializes something itself, gets a writer of its own.
+ * Buffers that grew past MAX_RETAINED are dropped on release.
+ * @author Fredrik Roos 2023
+ */
+final class WriterPool {
+
+    private static final int MAX_RETAINED = 1 << 16;
+
+    private static final ThreadLocal<WriterPool> POOLS = new ThreadLocal<WriterPool>() {
+        @Override
+        protected WriterPool initialValue() {
+            return new WriterPool();
+        }
+    };
+
+    private StringBuilder builder = new StringBuilder(256);
+    private final JSunWriter.StringBuilderWriter chars = new JSunWriter.StringBuilderWriter(null);
+    private Utf8Writer bytes = new Utf8Writer(null, null, null);
+    private CborWriter cbor = new CborWriter();
+    private boolean charsInUse;
+    private boolean bytesInUse;
+    private boolean cborInUse;
+
+    private WriterPool() {
+    }
+
+    static WriterPool get() {
+        return POOLS.get();
+    }
+
+    /**
+     * @param out StringBuilder to write to, null for the pooled one.
+     * @return a writer to out, give it back with release().
+     */
+    JSunWriter.StringBuilderWriter chars(StringBuilder out) {
+        if (charsInUse) return new JSunWriter.StringBuilderWriter(out != null ? out : new StringBuilder());
+        charsInUse = true;
+        if (out == null) {
+            builder.setLength(0);
+            out = builder;
+        }
+        chars.reset(out);
+        return chars;
+    }
+
+    void release(JSunWriter.StringBuilderWriter writer) {
+        if (writer != chars) return;
+        if (builder.capacity() > MAX_RETAINED) builder = new StringBuilder(256);
+        chars.reset(null);
+        charsInUse = false;
+    }
+
+    /**
+     * @return a UTF-8 writer to the one non null sink, or to its own byte[] if all are null.
+     */
+    Utf8Writer bytes(OutputStream stream, WritableByteChannel channel, ByteBuffer target) {
+        if (bytesInUse) return new Utf8Writer(stream, channel, target);
+        bytesInUse = true;
+        bytes.reset(stream, channel, target);
+        return bytes;
+    }
+
+    void release(Utf8Writer writer) {
+        if (writer != bytes) return;
+        if (bytes.capacity() > MAX_RETAINED) bytes = new Utf8Writer(null, null, null);
+        else bytes.reset(null, null, null);
+        bytesInUse = false;
+    }
+
+    /**
+     * @return a CBOR writer to stream, or to its own byte[] if null.
+     */
+    CborWriter cbor(OutputStream stream) {
+        if (cborInUse) return new CborWriter(stream);
+        cborInUse = true;
+        cbor.reset(stream);
+        return cbor;
+    }
+
+    void release(CborWriter writer) {
+        if (writer != cbor) return;
+        if (cbor.capacity() > MAX_RETAINED) cbor = new CborWriter();
+        else cbor.reset(null);
+        cborInUse = false;
+    }
+}
@@ -0,0 +1,28 @@
+// Creates a table where this script is and sets jsunTable to a function appending rows to it.
+// Rows are [value,...] or {"column":value,...}, the head is made from the keys of the first object row.
+var jsunTable = (function (script) {
+    var table = document.createElement("table");
+    var body = table.createTBody();
+    script.parentNode.insertBefore(table, script);
+    return function (rows) {
+        rows.forEach(function (row) {
+            var values = row;
+            if (!Array.isArray(row)) {
+                var keys = Object.keys(row);
+                if (!table.tHead) {
+                    var head = table.createTHead().insertRow();
+                    keys.forEach(function (key) {
+                        var th = document.createElement("th");
+                        th.textContent = key;
+                        head.appendChild(th);
+                    });
+                }
+                values = keys.map(function (key) { return row[key]; });
+            }
+            var tr = body.insertRow();
+            values.forEach(function (value) {
+                tr.insertCell().textContent = value === null ? "" : value;
+            });
+        });
+    };
+})(document.currentScript);
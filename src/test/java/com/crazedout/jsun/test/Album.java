@@ -0,0 +1,91 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSunClass;
+
+import java.util.List;
+
+@JSunClass(exclude="secret")
+public class Album {
+
+    private String title;
+    private int year;
+    private long sales;
+    private double rating;
+    private boolean live;
+    private Integer tracks;
+    private List<String> songs;
+    private List<Person> musicians;
+    private String secret;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public long getSales() {
+        return sales;
+    }
+
+    public void setSales(long sales) {
+        this.sales = sales;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public void setRating(double rating) {
+        this.rating = rating;
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    public Integer getTracks() {
+        return tracks;
+    }
+
+    public void setTracks(Integer tracks) {
+        this.tracks = tracks;
+    }
+
+    public List<String> getSongs() {
+        return songs;
+    }
+
+    public void setSongs(List<String> songs) {
+        this.songs = songs;
+    }
+
+    public List<Person> getMusicians() {
+        return musicians;
+    }
+
+    public void setMusicians(List<Person> musicians) {
+        this.musicians = musicians;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+}
@@ -0,0 +1,149 @@
+package com.crazedout.jsun.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.function.BiFunction;
+
+/**
+ * In memory ResultSet for tests, cells are produced on demand by a function of (row, column).
+ * Only the methods JSun uses are implemented.
+ */
+public class StubResultSet implements InvocationHandler {
+
+    private final String[] columns;
+    private final int[] types;
+    private final long rows;
+    private final BiFunction<Long, Integer, Object> cells;
+    private long row = -1;
+    private boolean wasNull;
+    private boolean closed;
+    private int fetchSize;
+    private long nanosPerRow;
+
+    public StubResultSet(String[] columns, int[] types, long rows, BiFunction<Long, Integer, Object> cells) {
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+        this.cells = cells;
+    }
+
+    public StubResultSet(String[] columns, int[] types, Object[][] data) {
+        this(columns, types, data.length, (r, c) -> data[r.intValue()][c]);
+    }
+
+    /**
+     * Makes next() sleep, to simulate a slow driver.
+     */
+    public StubResultSet slow(long nanosPerRow) {
+        this.nanosPerRow = nanosPerRow;
+        return this;
+    }
+
+    public ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, this);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    private ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return columns.length;
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return columns[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return types[(Integer) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private Object cell(Object column) {
+        if (closed) throw new IllegalStateException("ResultSet is closed.");
+        int index = column instanceof Integer ? (Integer) column - 1 : indexOf((String) column);
+        Object value = cells.apply(row, index);
+        wasNull = value == null;
+        return value;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < columns.length; i++) if (columns[i].equalsIgnoreCase(name)) return i;
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                if (closed) throw new IllegalStateException("ResultSet is closed.");
+                if (nanosPerRow > 0) Thread.sleep(nanosPerRow / 1_000_000, (int) (nanosPerRow % 1_000_000));
+                return ++row < rows;
+            case "getMetaData":
+                return metaData();
+            case "getObject":
+                return cell(args[0]);
+            case "getString": {
+                Object v = cell(args[0]);
+                return v == null ? null : v.toString();
+            }
+            case "getLong": {
+                Object v = cell(args[0]);
+                return v == null ? 0L : ((Number) v).longValue();
+            }
+            case "getInt": {
+                Object v = cell(args[0]);
+                return v == null ? 0 : ((Number) v).intValue();
+            }
+            case "getDouble": {
+                Object v = cell(args[0]);
+                return v == null ? 0d : ((Number) v).doubleValue();
+            }
+            case "getFloat": {
+                Object v = cell(args[0]);
+                return v == null ? 0f : ((Number) v).floatValue();
+            }
+            case "getBigDecimal":
+            case "getDate":
+            case "getTime":
+            case "getTimestamp":
+                return cell(args[0]);
+            case "getBoolean": {
+                Object v = cell(args[0]);
+                return v != null && (Boolean) v;
+            }
+            case "wasNull":
+                return wasNull;
+            case "setFetchSize":
+                fetchSize = (Integer) args[0];
+                return null;
+            case "getFetchSize":
+                return fetchSize;
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "StubResultSet";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -3,14 +3,33 @@ package com.crazedout.jsun.test;
 import com.crazedout.jsun.JSun;
 import org.junit.jupiter.api.Test;
 import javax.script.ScriptException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class TestJSun {
 
+    public static class Worker {
+        public String getThread() {
+            return Thread.currentThread().getName();
+        }
+    }
+
     private static void out(String str){
         System.out.println(str);
     }
@@ -29,6 +48,22 @@ public class TestJSun {
         assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    public void testWideJSun() {
+        JSun jsun = new JSun();
+        for (int i = 0; i < 5000; i++) jsun.put("key" + i, i);
+        assertEquals(5000, jsun.getKeyPairList().size());
+        assertEquals(4711, jsun.get("key4711"));
+        assertNull(jsun.get("key5000"));
+        assertThrows(RuntimeException.class, () -> jsun.put("key2500", 1));
+        jsun.put("names", Arrays.asList("John", "Paul"));
+        assertEquals(Arrays.asList("John", "Paul"), jsun.get("names"));
+        assertTrue(jsun.eval().startsWith("{\"key0\":0,\"key1\":1,"));
+        jsun.clear();
+        jsun.put("key4711", 1);
+        assertEquals(1, jsun.get("key4711"));
+    }
+
     @Test
     public void testNullsJSun() {
         Tutorial tut = new Tutorial();
@@ -52,6 +87,20 @@ public class TestJSun {
         json.eval();
     }
 
+    @Test
+    public void testPlanReuse() {
+        Tutorial tut = new Tutorial();
+        tut.setValues(1,"Java One on One","Java book",1);
+        JSun first = new JSun(tut);
+        tut.setValues(2,"Java Two on Two","Java book",3);
+        JSun second = new JSun(tut);
+        assertTrue(first.eval().contains("\"id\":1"));
+        assertTrue(second.eval().contains("\"id\":2"));
+        assertFalse(second.eval().contains("values"));
+        second.clear();
+        assertEquals("{}", second.eval());
+    }
+
     @Test
     public void testJSun() throws ScriptException {
         Tutorials tut = new Tutorials();
@@ -60,12 +109,364 @@ public class TestJSun {
         JSun.evaluate(js);
     }
 
+    @Test
+    public void testEvalValidates() {
+        JSun json = new JSun();
+        json.put("id", 4);
+        json.put("when", new Object(){
+            @Override
+            public String toString(){
+                return "not json";
+            }
+        });
+        assertThrows(RuntimeException.class, json::eval);
+        json.clear();
+        json.put("names", Arrays.asList("John", "Paul"));
+        assertEquals("{\"names\":[\"John\",\"Paul\"]}", json.eval());
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        JSun json = new JSun();
+        json.put("drummer", new JSun("name", "Ringo"));
+        json.put("names", Arrays.asList("John", "Paul"));
+        json.put("id", 4);
+        String expected = "{\"drummer\":{\"name\":\"Ringo\"},\"names\":[\"John\",\"Paul\"],\"id\":4}";
+        assertEquals(expected, json.eval());
+
+        StringWriter writer = new StringWriter();
+        json.writeTo(writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        json.writeTo(bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUtf8() throws IOException {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 5000; i++) longText.append(i % 7 == 0 ? "\u00e5\ud83d\ude00" : "abc");
+        JSun json = new JSun();
+        json.put("name", "Fredrik R\u00e5\u00f6s \u20ac");
+        json.put("text", longText.toString());
+        json.put("tutorial", new JSun(new Tutorial()));
+        byte[] expected = json.toString().getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, json.toBytes());
+
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        json.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(expected, buffer.array());
+        assertThrows(BufferOverflowException.class, () -> json.writeTo(ByteBuffer.allocate(10)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        json.writeTo(Channels.newChannel(bytes));
+        assertArrayEquals(expected, bytes.toByteArray());
+    }
+
+    @Test
+    public void testEscaping() throws ScriptException {
+        String text = "Say \"hi\"\\ it's\n\ttab\u0001 \u00e5";
+        JSun json = new JSun("q\"uote", text);
+        assertEquals("{\"q\\\"uote\":\"Say \\\"hi\\\"\\\\ it's\\n\\ttab\\u0001 \u00e5\"}", json.toString());
+        json.eval();
+        JSun parsed = JSun.parse(json.toString());
+        assertEquals(text, parsed.get("q\"uote"));
+        assertEquals(json.toString(), new String(json.toBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEscapingLongStrings() {
+        // Around the lengths where writeString checks whole blocks, and chars above 0xFF whose low byte looks special.
+        char[] specials = {'"', '\\', '\n', '\u001f', '\u0122', '\u015c', '\u010a', '\u00e5'};
+        for (int length : new int[]{63, 64, 100, 1023, 1024, 1025, 2100}) {
+            for (char special : specials) {
+                for (int at : new int[]{0, length / 2, length - 1}) {
+                    char[] chars = new char[length];
+                    Arrays.fill(chars, 'x');
+                    chars[at] = special;
+                    String text = new String(chars);
+                    String json = new JSun("k", text).toString();
+                    for (int i = 0; i < json.length(); i++) assertTrue(json.charAt(i) >= 0x20, json);
+                    assertEquals(text, JSun.parse(json).get("k"));
+                    assertEquals(json, new String(new JSun("k", text).toBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitives() {
+        JSun json = new JSun();
+        json.put("int", -42);
+        json.put("long", Long.MIN_VALUE);
+        json.put("double", 0.1 + 0.2);
+        json.put("big", 1e23);
+        json.put("nan", Double.NaN);
+        json.put("flag", true);
+        json.put("float", 1.1f);
+        json.put("char", 'A');
+        json.put("quote", '"');
+        assertEquals("{\"int\":-42,\"long\":-9223372036854775808,\"double\":0.30000000000000004,"
+                + "\"big\":1.0E23,\"nan\":null,\"flag\":true,\"float\":1.1,\"char\":\"A\",\"quote\":\"\\\"\"}", json.eval());
+        assertEquals(new JSun("char", (Object) 'A').toString(), new JSun("char", 'A').toString());
+        assertEquals(-42, json.get("int"));
+        assertEquals(Long.MIN_VALUE, json.get("long"));
+        assertEquals(true, json.get("flag"));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            double v = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(v) || Double.isInfinite(v)) continue;
+            String text = new JSun("v", v).toString();
+            assertEquals(v, Double.parseDouble(text.substring(5, text.length() - 1)));
+        }
+    }
+
+    @Test
+    public void testPrimitiveArrays() {
+        JSun json = new JSun();
+        json.put("ints", new int[]{1, -2, Integer.MAX_VALUE});
+        json.put("longs", new long[]{Long.MAX_VALUE});
+        json.put("doubles", new double[]{0.5, Double.NaN});
+        json.put("flags", new boolean[]{true, false});
+        json.put("empty", new int[0]);
+        json.put("boxed", Arrays.asList(7L, (short) 3, true, new BigDecimal("1.50"), 'x', null));
+        assertEquals("{\"ints\":[1,-2,2147483647],\"longs\":[9223372036854775807],\"doubles\":[0.5,null],"
+                + "\"flags\":[true,false],\"empty\":[],\"boxed\":[7,3,true,1.50,\"x\",null]}", json.eval());
+
+        String text = "{\"ids\":[1,9223372036854775807,-3],\"on\":[true,false]}";
+        assertEquals(text, JSun.parse(text).eval());
+    }
+
+    @Test
+    public void testRenderCache() throws ScriptException {
+        JSun child = new JSun("name", "John");
+        int[] scores = {1, 2};
+        JSun parent = new JSun();
+        parent.put("child", child);
+        parent.put("list", Arrays.asList(child, "x"));
+        JSun root = new JSun();
+        root.put("parent", parent);
+
+        String first = root.toString();
+        assertSame(first, root.toString());
+        assertSame(first, root.eval());
+        root.toString();
+        assertSame(first, root.toString());
+
+        child.put("instrument", "Guitar");
+        String changed = "{\"name\":\"John\",\"instrument\":\"Guitar\"}";
+        assertEquals("{\"parent\":{\"child\":" + changed + ",\"list\":[" + changed + ",\"x\"]}}", root.eval());
+
+        parent.put("scores", scores);
+        root.toString();
+        scores[0] = 9;
+        assertTrue(root.toString().endsWith("\"scores\":[9,2]}}"));
+
+        child.clear();
+        child.put("name", "Paul");
+        assertEquals("{\"parent\":{\"child\":{\"name\":\"Paul\"},\"list\":[{\"name\":\"Paul\"},\"x\"],"
+                + "\"scores\":[9,2]}}", root.toString());
+        assertEquals(root.toString(), JSun.parse(root.toString()).toString());
+    }
+
+    /**
+     * A JSun with the same Json as json, built fresh so it has nothing cached.
+     */
+    private static JSun copy(JSun json) {
+        JSun copy = new JSun();
+        for (JSun.KeyValuePair pair : json.getKeyPairList()) copy.put(pair.getName(), copyValue(pair.getValue()));
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof JSun) return copy((JSun) value);
+        if (value instanceof int[]) return ((int[]) value).clone();
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object o : (List<?>) value) list.add(copyValue(o));
+            return list;
+        }
+        return value;
+    }
+
+    @Test
+    public void testRenderCacheRandom() {
+        Random random = new Random(17);
+        for (int run = 0; run < 50; run++) {
+            // A JSun only holds JSun after it, so the graph has no cycles, but JSun are shared.
+            JSun[] nodes = new JSun[6];
+            for (int i = 0; i < nodes.length; i++) nodes[i] = new JSun();
+            List<int[]> arrays = new ArrayList<>();
+            for (int step = 0; step < 200; step++) {
+                int i = random.nextInt(nodes.length);
+                JSun node = nodes[i];
+                JSun other = nodes[Math.min(nodes.length - 1, i + 1 + random.nextInt(nodes.length))];
+                String key = "k" + step;
+                switch (random.nextInt(8)) {
+                    case 0:
+                        node.put(key, random.nextInt(100));
+                        break;
+                    case 1:
+                        if (other != node) node.put(key, other);
+                        break;
+                    case 2:
+                        if (other != node) node.put(key, (Object) Arrays.asList("x", other, Arrays.asList(other)));
+                        break;
+                    case 3:
+                        List<JSun.KeyValuePair> pairs = node.getKeyPairList();
+                        if (!pairs.isEmpty()) pairs.remove(random.nextInt(pairs.size()));
+                        break;
+                    case 4:
+                        if (random.nextInt(4) == 0) node.clear();
+                        break;
+                    case 5:
+                        int[] scores = {step};
+                        arrays.add(scores);
+                        node.put(key, scores);
+                        break;
+                    case 6:
+                        if (!arrays.isEmpty()) arrays.get(random.nextInt(arrays.size()))[0]++;
+                        break;
+                    default:
+                        new JSun("envelope", node).toString();
+                }
+                JSun checked = nodes[random.nextInt(nodes.length)];
+                assertEquals(copy(checked).toString(), checked.toString());
+            }
+        }
+    }
+
+    private static Album album() {
+        Album album = new Album();
+        album.setTitle("Abbey \"Road\"");
+        album.setYear(1969);
+        album.setSales(31_000_000L);
+        album.setRating(4.75);
+        album.setTracks(17);
+        album.setSongs(Arrays.asList("Come Together", "Something"));
+        album.setMusicians(Arrays.asList(new Person("John", "Guitar"), new Person("Paul", "Bass")));
+        return album;
+    }
+
+    @Test
+    public void testSerialize() throws IOException {
+        Album album = album();
+        String expected = new JSun(album).toString();
+        assertEquals(1969, new JSun(album).get("year"));
+
+        StringBuilder sb = new StringBuilder("x");
+        JSun.serialize(album, sb);
+        assertEquals("x" + expected, sb.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JSun.serialize(album, bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        JSun.serialize(album, buffer);
+        assertEquals(expected, new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+
+        StringWriter writer = new StringWriter();
+        JSun.serialize(new JSun(album), writer);
+        assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    public void testSerializeAllocationFree() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long id = Thread.currentThread().getId();
+
+        Album album = album();
+        StringBuilder sb = new StringBuilder(1024);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 200_000; i++) {
+            sb.setLength(0);
+            JSun.serialize(album, sb);
+            buffer.clear();
+            JSun.serialize(album, buffer);
+        }
+        int calls = 20_000;
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < calls; i++) {
+            sb.setLength(0);
+            JSun.serialize(album, sb);
+            buffer.clear();
+            JSun.serialize(album, buffer);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        // Leaves room for the few bytes the measuring itself allocates.
+        assertTrue(allocated < calls, allocated + " bytes allocated by " + calls + " calls");
+    }
+
+    @Test
+    public void testNdjson() throws IOException {
+        List<Object> items = Arrays.asList(new Person("John", "Guitar"), new JSun("n", 1), "line\nbreak", 42, null);
+        StringWriter out = new StringWriter();
+        assertEquals(5, JSun.writeNdjson(items, out, 2));
+        assertEquals("{\"name\":\"John\",\"instrument\":\"Guitar\"}\n{\"n\":1}\n\"line\\nbreak\"\n42\nnull\n",
+                out.toString());
+
+        String array = new JSun(items).toString();
+        assertEquals(array, "[" + String.join(",", out.toString().trim().split("\n")) + "]");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JSun.writeNdjson(items, bytes, 0);
+        assertEquals(out.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
     @Test
     public void testArrays() throws ScriptException {
         Person[] persons = {new Person("John","Guitar"), new Person("Paul","Bass")};
         (new JSun("Beat", persons)).eval();
     }
 
+    @Test
+    public void testParallel() {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            list.add(i % 3 == 0 ? "name" + i : new Person("John" + i, "Guitar"));
+        }
+        String sequential = new JSun("persons", list).toString();
+        JSun.setParallelThreshold(1000);
+        try {
+            assertEquals(sequential, new JSun("persons", list).toString());
+            assertEquals(sequential, new JSun("persons", list).eval());
+        } finally {
+            JSun.setParallelThreshold(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testParallelPool() throws Exception {
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) workers.add(new Worker());
+        ForkJoinPool pool = new ForkJoinPool(2, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("jsun-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        ForkJoinPool other = new ForkJoinPool(1);
+        JSun.setParallelThreshold(1000);
+        JSun.setForkJoinPool(pool);
+        try {
+            // Called from a worker of another pool, the work still goes to the configured pool.
+            String json = other.submit(() -> new JSun("workers", workers).toString()).get();
+            assertTrue(json.contains("\"thread\":\"jsun-"));
+            assertFalse(json.contains("\"thread\":\"ForkJoinPool"));
+        } finally {
+            JSun.setParallelThreshold(Integer.MAX_VALUE);
+            JSun.setForkJoinPool(null);
+            pool.shutdown();
+            other.shutdown();
+        }
+    }
+
     @Test
     public void beatlesTest() throws ScriptException {
 
@@ -0,0 +1,69 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunBinder {
+
+    @Test
+    public void testBindSetters() {
+        String json = "{\"title\":\"Help!\",\"year\":1965,\"sales\":9000000000,\"rating\":4.5,\"live\":true," +
+                "\"tracks\":14,\"songs\":[\"Help!\",\"Yesterday\"],\"secret\":\"Pete\",\"unknown\":{\"a\":[1,2]}," +
+                "\"musicians\":[{\"name\":\"John\",\"instrument\":\"Guitar\"},{\"name\":\"Paul\",\"instrument\":\"Bass\"}]}";
+        Album album = JSun.bind(json, Album.class);
+        assertEquals("Help!", album.getTitle());
+        assertEquals(1965, album.getYear());
+        assertEquals(9_000_000_000L, album.getSales());
+        assertEquals(4.5, album.getRating());
+        assertTrue(album.isLive());
+        assertEquals(14, album.getTracks());
+        assertEquals(Arrays.asList("Help!", "Yesterday"), album.getSongs());
+        assertNull(album.getSecret());
+        assertEquals(2, album.getMusicians().size());
+        assertEquals("Bass", album.getMusicians().get(1).getInstrument());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Album album = new Album();
+        album.setTitle("Abbey Road");
+        album.setYear(1969);
+        album.setRating(5);
+        album.setSongs(Arrays.asList("Come Together", "Something"));
+        album.setMusicians(Arrays.asList(new Person("George", "Guitar")));
+        String json = new JSun(album).eval();
+        Album copy = JSun.bind(json, Album.class);
+        assertEquals(json, new JSun(copy).eval());
+
+        List<Person> beatles = new ArrayList<>();
+        beatles.add(new Person("John", "Guitar"));
+        beatles.add(new Person("Ringo", "Drums"));
+        List<Person> persons = JSun.bindList(new JSun(beatles).eval(), Person.class);
+        assertEquals(2, persons.size());
+        assertEquals("Ringo", persons.get(1).getName());
+        assertEquals("Drums", persons.get(1).getInstrument());
+    }
+
+    @Test
+    public void testNulls() {
+        Album album = JSun.bind("{\"year\":null,\"tracks\":null,\"title\":null}", Album.class);
+        assertEquals(0, album.getYear());
+        assertNull(album.getTracks());
+        assertNull(album.getTitle());
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(RuntimeException.class, () -> JSun.bind("{\"year\":\"1965\"}", Album.class));
+        assertThrows(RuntimeException.class, () -> JSun.bind("{\"year\":3000000000}", Album.class));
+        assertThrows(RuntimeException.class, () -> JSun.bind("{\"year\":19.5}", Album.class));
+        assertThrows(RuntimeException.class, () -> JSun.bind("[]", Album.class));
+        assertThrows(RuntimeException.class, () -> JSun.bind("{\"title\":\"a\"", Album.class));
+    }
+}
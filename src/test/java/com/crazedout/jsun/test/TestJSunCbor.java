@@ -0,0 +1,164 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunCbor {
+
+    private static byte[] hex(String s) {
+        byte[] b = new byte[s.length() / 2];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        return b;
+    }
+
+    private static Album album() {
+        Album album = new Album();
+        album.setTitle("Abbey \"Road\" \u00e5\u00e4\u00f6 \ud83c\udfb8");
+        album.setYear(1969);
+        album.setSales(31_000_000_000L);
+        album.setRating(4.1);
+        album.setLive(true);
+        album.setSongs(Arrays.asList("Come Together", "Something"));
+        album.setMusicians(Arrays.asList(new Person("John", "Guitar"), new Person("Paul", "Bass")));
+        return album;
+    }
+
+    @Test
+    public void testEncoding() {
+        // Examples from RFC 8949 appendix A.
+        assertArrayEquals(hex("a26161016162820203"), JSun.parse("{\"a\":1,\"b\":[2,3]}").toCbor());
+        assertArrayEquals(hex("8301820203820405"), JSun.parse("[1,[2,3],[4,5]]").toCbor());
+        assertArrayEquals(hex("83f4f5f6"), JSun.parse("[false,true,null]").toCbor());
+        assertArrayEquals(hex("84181819010039e7ff3a7fffffff"), JSun.parse("[24,256,-59392,-2147483648]").toCbor());
+        assertArrayEquals(hex("811b000000e8d4a51000"), JSun.parse("[1000000000000]").toCbor());
+        assertArrayEquals(hex("82fa3fc00000fb3ff199999999999a"), JSun.parse("[1.5,1.1]").toCbor());
+        assertArrayEquals(hex("8162c3bc"), JSun.parse("[\"\u00fc\"]").toCbor());
+        assertArrayEquals(hex("81c249010000000000000000"), JSun.parse("[18446744073709551616]").toCbor());
+
+        assertEquals("[1.5,-4.0,100000.0]", JSun.parseCbor(hex("83f93e00f9c400fa47c35000")).toString());
+        assertEquals("{\"a\":\"streaming\",\"b\":[1,2]}",
+                JSun.parseCbor(hex("bf61617f657374726561646d696e67ff61629f0102ffff")).toString());
+        assertEquals("[-18446744073709551617,273.15]", JSun.parseCbor(hex("82c349010000000000000000c48221196ab3")).toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        JSun js = new JSun();
+        js.put("name", "R\u00e5\u00e9 \"quoted\"\n\ud83c\udfb8");
+        js.put("count", 42);
+        js.put("big", Long.MIN_VALUE);
+        js.put("ratio", 0.1);
+        js.put("ok", false);
+        js.put("none", (Object) null);
+        js.put("total", new BigDecimal("-12345678901234567890.125"));
+        js.put("huge", new BigInteger("123456789012345678901234567890"));
+        js.put("ids", new int[]{1, -1, 65536});
+        js.put("nested", new JSun("inner", Arrays.asList("a", "b")));
+        js.put("empty", new ArrayList<>());
+        assertEquals(js.toString(), JSun.parseCbor(js.toCbor()).toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        js.writeCbor(out);
+        assertArrayEquals(js.toCbor(), out.toByteArray());
+
+        JSun list = new JSun(Arrays.asList(new Person("John", "Guitar"), new Person("Paul", "Bass")));
+        assertEquals(list.toString(), JSun.parseCbor(list.toCbor()).toString());
+    }
+
+    @Test
+    public void testFloats() {
+        JSun js = new JSun();
+        js.put("float", 0.1f);
+        js.put("half", 1.5f);
+        js.put("max", Float.MAX_VALUE);
+        js.put("widened", (double) 0.1f);
+        js.put("exact", 1.5);
+        js.put("int", 16777216.0);
+        js.put("small", 0.001);
+        assertEquals(js.toString(), JSun.parseCbor(js.toCbor()).toString());
+        assertTrue(js.toString().contains("\"float\":0.1,"));
+
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            float f = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(f) || Float.isInfinite(f)) continue;
+            JSun v = new JSun();
+            v.put("f", f);
+            v.put("d", (double) f);
+            v.put("r", (double) Math.round(f * 1000f) / 1000);
+            assertEquals(v.toString(), JSun.parseCbor(v.toCbor()).toString());
+        }
+    }
+
+    @Test
+    public void testObjects() throws IOException {
+        Album album = album();
+        JSun js = new JSun(album);
+        assertEquals(js.toString(), JSun.parseCbor(js.toCbor()).toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSun.serializeCbor(album, out);
+        assertEquals(js.toString(), JSun.parseCbor(out.toByteArray()).toString());
+
+        Album copy = JSun.bindCbor(out.toByteArray(), Album.class);
+        assertEquals(js.toString(), new JSun(copy).toString());
+        assertEquals(album.getTitle(), copy.getTitle());
+        assertEquals(31_000_000_000L, copy.getSales());
+        assertNull(copy.getSecret());
+        assertEquals("Bass", copy.getMusicians().get(1).getInstrument());
+
+        List<Person> beatles = new ArrayList<>();
+        beatles.add(new Person("John", "Guitar"));
+        beatles.add(new Person("Ringo", "Drums"));
+        List<Person> persons = JSun.bindListCbor(new JSun(beatles).toCbor(), Person.class);
+        assertEquals(2, persons.size());
+        assertEquals("Drums", persons.get(1).getInstrument());
+    }
+
+    @Test
+    public void testResult() throws SQLException, IOException {
+        String[] columns = {"id", "score", "active", "name", "total"};
+        int[] types = {Types.BIGINT, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.DECIMAL};
+        Object[][] rows = {
+                {9_000_000_000L, 1.5, true, "John", new BigDecimal("10.25")},
+                {null, null, null, null, null}};
+        for (boolean rowsAsObjects : new boolean[]{false, true}) {
+            JSunResult result = new JSunResult(new StubResultSet(columns, types, rows).resultSet(), rowsAsObjects);
+            assertEquals(result.toString(), JSun.parseCbor(result.toCbor()).toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            result.writeCbor(out);
+            assertArrayEquals(result.toCbor(), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(new byte[0]));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("01")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("8201")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("800000")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("8141ff")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("a2616101616102")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("9bffffffffffffffff")));
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(hex("a10101")));
+        byte[] deep = new byte[2000];
+        Arrays.fill(deep, (byte) 0x81);
+        assertThrows(RuntimeException.class, () -> JSun.parseCbor(deep));
+        assertThrows(RuntimeException.class, () -> JSun.bindCbor(hex("a164796561726431393635"), Album.class));
+        assertThrows(RuntimeException.class, () -> JSun.bindCbor(hex("80"), Album.class));
+    }
+}
@@ -0,0 +1,93 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunIndex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunIndex {
+
+    private static final String JSON = "{\"band\":{\"name\":\"The \\\"Beatles\\\"\",\"founded\":1960,\"active\":false," +
+            "\"members\":[{\"name\":\"John\",\"born\":1940},{\"name\":\"Paul\",\"born\":1942}," +
+            "{\"name\":\"George\",\"born\":1943,\"guitars\":[\"Gretsch\",\"Rickenbacker\"]}]}," +
+            "\"rating\":4.75,\"sales\":9000000000,\"none\":null,\"stad\":\"G\u00f6teborg\",\"f\u00f6r\\u00e5\":1," +
+            "\"matrix\":[[1,2],[3,4]]}";
+
+    @Test
+    public void testPaths() {
+        for (JSunIndex index : new JSunIndex[]{JSun.index(JSON), JSun.index(JSON.getBytes(StandardCharsets.UTF_8))}) {
+            assertEquals("The \"Beatles\"", index.getString("band.name"));
+            assertEquals(1960, index.getLong("band.founded"));
+            assertEquals(1960, index.get("band.founded"));
+            assertFalse(index.getBoolean("band.active"));
+            assertEquals("George", index.getString("band.members[2].name"));
+            assertEquals(1943, index.getLong("band.members[2].born"));
+            assertEquals("Rickenbacker", index.get("band.members[2].guitars[1]"));
+            assertEquals(Arrays.asList("Gretsch", "Rickenbacker"), index.get("band.members[2].guitars"));
+            assertEquals(4.75, index.getDouble("rating"));
+            assertEquals(9_000_000_000L, index.getLong("sales"));
+            assertEquals("G\u00f6teborg", index.getString("stad"));
+            assertEquals(1, index.get("f\u00f6r\u00e5"));
+            assertEquals(4, index.get("matrix[1][1]"));
+            assertEquals(3, index.size("band.members"));
+            assertEquals(4, index.size("band"));
+            assertEquals(-1, index.size("rating"));
+
+            assertTrue(index.has("none"));
+            assertNull(index.get("none"));
+            assertNull(index.getString("none"));
+            assertFalse(index.has("band.members[3]"));
+            assertFalse(index.has("band.name.first"));
+            assertFalse(index.has("rating[0]"));
+            assertNull(index.get("missing"));
+
+            JSun member = (JSun) index.get("band.members[0]");
+            assertEquals("{\"name\":\"John\",\"born\":1940}", member.toString());
+            assertEquals("{\"name\":\"John\",\"born\":1940}", index.getJson("band.members[0]"));
+            assertEquals(JSun.parse(JSON).toString(), ((JSun) index.get("")).toString());
+        }
+    }
+
+    @Test
+    public void testArrayRoot() {
+        JSunIndex index = JSun.index(" [ {\"id\" : 1} , [true] , \"x\" ] ");
+        assertEquals(3, index.size(""));
+        assertEquals(1, index.getLong("[0].id"));
+        assertTrue(index.getBoolean("[1][0]"));
+        List<?> list = (List<?>) index.get("");
+        assertEquals(3, list.size());
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) sb.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"tags\":[\"a\",\"b\"]}");
+        index = JSun.index(sb.append(']'));
+        assertEquals(1000, index.size(""));
+        assertEquals(999, index.getLong("[999].id"));
+        assertEquals("b", index.getString("[500].tags[1]"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(RuntimeException.class, () -> JSun.index("{\"a\":1"));
+        assertThrows(RuntimeException.class, () -> JSun.index("{\"a\":01}"));
+        assertThrows(RuntimeException.class, () -> JSun.index("{\"a\":tru}"));
+        assertThrows(RuntimeException.class, () -> JSun.index("[1,]"));
+        assertThrows(RuntimeException.class, () -> JSun.index("\"a\""));
+        assertThrows(RuntimeException.class, () -> JSun.index("{} x"));
+
+        JSunIndex index = JSun.index("{\"a\":{\"b\":1,\"b\":2},\"s\":\"\\q\",\"n\":1.5}");
+        assertEquals(1, index.getLong("a.b"));
+        assertThrows(RuntimeException.class, () -> index.get("a"));
+        assertThrows(RuntimeException.class, () -> index.get("s"));
+        assertThrows(RuntimeException.class, () -> index.getLong("n"));
+        assertThrows(RuntimeException.class, () -> index.getString("n"));
+        assertThrows(RuntimeException.class, () -> index.getLong("missing"));
+        assertThrows(RuntimeException.class, () -> index.get("a..b"));
+        assertThrows(RuntimeException.class, () -> index.get("a[x]"));
+        assertThrows(RuntimeException.class, () -> index.get("a."));
+    }
+}
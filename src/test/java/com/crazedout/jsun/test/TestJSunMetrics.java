@@ -0,0 +1,90 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunMetrics;
+import com.crazedout.jsun.JSunMetricsListener;
+import com.crazedout.jsun.JSunResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunMetrics {
+
+    private final JSunMetrics metrics = JSunMetrics.get();
+
+    @BeforeEach
+    public void enable() {
+        metrics.reset();
+        JSunMetrics.enable();
+    }
+
+    @AfterEach
+    public void disable() {
+        JSunMetrics.disable();
+        metrics.reset();
+    }
+
+    @Test
+    public void testSerialization() {
+        AtomicLong listened = new AtomicLong();
+        JSunMetricsListener listener = new JSunMetricsListener() {
+            @Override
+            public void serialized(long chars, long bytes, long nanos) {
+                listened.addAndGet(chars > 0 ? chars : bytes);
+            }
+        };
+        JSunMetrics.addListener(listener);
+        try {
+            String json = new JSun(new Person("John", "Guitar")).toString();
+            byte[] bytes = new JSun(new Person("Paul", "Bass")).toBytes();
+            new JSun(new Person("John", "Guitar")).eval();
+
+            assertEquals(3, metrics.getDocumentsSerialized());
+            assertEquals(json.length() * 2L, metrics.getCharsSerialized());
+            assertEquals(bytes.length, metrics.getBytesSerialized());
+            assertEquals(json.length() * 2L + bytes.length, listened.get());
+
+            String name = Person.class.getName();
+            long lookups = metrics.getPlanCacheHitsByClass().getOrDefault(name, 0L)
+                    + metrics.getPlanCacheMissesByClass().getOrDefault(name, 0L);
+            assertEquals(3, lookups);
+
+            assertEquals(1, metrics.getValidations());
+            long histogram = 0;
+            for (long count : metrics.getValidationLatencyHistogram()) histogram += count;
+            assertEquals(1, histogram);
+        } finally {
+            JSunMetrics.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void testResultAndJmx() throws Exception {
+        Object[][] rows = {{"John", 1}, {"Paul", 2}, {"George", 3}};
+        new JSunResult(new StubResultSet(new String[]{"name", "id"}, new int[]{Types.VARCHAR, Types.INTEGER}, rows)
+                .resultSet());
+        assertEquals(1, metrics.getResults());
+        assertEquals(3, metrics.getResultRows());
+
+        JSunMetrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(3L, server.getAttribute(new ObjectName(JSunMetrics.OBJECT_NAME), "ResultRows"));
+    }
+
+    @Test
+    public void testDisabled() {
+        JSunMetrics.disable();
+        new JSun(new Person("Ringo", "Drums")).eval();
+        assertEquals(0, metrics.getDocumentsSerialized());
+        assertEquals(0, metrics.getValidations());
+        assertEquals(0, metrics.getPlanCacheHits() + metrics.getPlanCacheMisses());
+    }
+}
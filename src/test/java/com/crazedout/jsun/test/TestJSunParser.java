@@ -0,0 +1,79 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunParser {
+
+    @Test
+    public void testRoundTrip() {
+        String json = "{\"id\":4,\"name\":\"Uthred\",\"alive\":false,\"wife\":null," +
+                "\"band\":{\"names\":[\"John\",\"Paul\"],\"drummer\":{\"name\":\"Ringo\"}}," +
+                "\"scores\":[1,2.5,-3,[true,{}],[]]}";
+        JSun js = JSun.parse(json);
+        assertEquals(json, js.eval());
+        assertEquals(4, js.get("id"));
+        assertEquals("Uthred", js.get("name"));
+        assertEquals(false, js.get("alive"));
+        assertNull(js.get("wife"));
+        JSun band = (JSun) js.get("band");
+        assertEquals(Arrays.asList("John", "Paul"), band.get("names"));
+        assertEquals("Ringo", ((JSun) band.get("drummer")).get("name"));
+        assertEquals("id", js.getKeyPairList().get(0).getName());
+        assertEquals(4, js.getKeyPairList().get(0).getValue());
+    }
+
+    @Test
+    public void testTopLevelArray() throws IOException {
+        String json = "[{\"name\":\"John\",\"instrument\":\"Guitar\"},{\"name\":\"Paul\",\"instrument\":\"Bass\"}]";
+        assertEquals(json, JSun.parse(json).toString());
+        assertEquals(json, JSun.parse(new StringReader(json)).toString());
+        assertEquals(json, JSun.parse(json.getBytes(StandardCharsets.UTF_8)).toString());
+        List<?> list = (List<?>) JSun.parse(json).getKeyPairList().get(0).getValue();
+        assertEquals("Bass", ((JSun) list.get(1)).get("instrument"));
+        assertEquals("[]", JSun.parse(" [ ] ").toString());
+    }
+
+    @Test
+    public void testNumbers() {
+        JSun js = JSun.parse("{\"i\":-2147483648,\"l\":9000000000,\"b\":123456789012345678901234567890," +
+                "\"d\":0.1,\"e\":-1.5e-3,\"z\":-0.0,\"big\":1.7976931348623157E308,\"long\":12345678901234567.25}");
+        assertEquals(Integer.MIN_VALUE, js.get("i"));
+        assertEquals(9_000_000_000L, js.get("l"));
+        assertEquals(new BigInteger("123456789012345678901234567890"), js.get("b"));
+        assertEquals(0.1, js.get("d"));
+        assertEquals(-1.5e-3, js.get("e"));
+        assertEquals(-0.0, js.get("z"));
+        assertEquals(Double.MAX_VALUE, js.get("big"));
+        assertEquals(12345678901234567.25, js.get("long"));
+    }
+
+    @Test
+    public void testStrings() {
+        JSun js = JSun.parse("{\"s\":\"a\\\"b\\\\c\\/d\\n\\t\\u00e5\\ud83d\\ude00\",\"\\u0041\":\"\u00e5\u00e4\u00f6\"}");
+        assertEquals("a\"b\\c/d\n\t\u00e5\ud83d\ude00", js.get("s"));
+        assertEquals("\u00e5\u00e4\u00f6", js.get("A"));
+        assertEquals("\u00e5\u00e4\u00f6", JSun.parse("[\"\u00e5\u00e4\u00f6\"]".getBytes(StandardCharsets.UTF_8)).toString()
+                .replaceAll("[\\[\\]\"]", ""));
+    }
+
+    @Test
+    public void testErrors() {
+        String[] invalid = {"", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1,}", "[1,]", "[01]", "[1.]", "[tru]",
+                "{\"a\":1}x", "\"text\"", "{a:1}", "[\"\\x\"]", "[\"a]", "{\"a\":1,\"a\":2}", "[-]", "[1e]"};
+        for (String json : invalid) {
+            assertThrows(RuntimeException.class, () -> JSun.parse(json), json);
+        }
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> JSun.parse("{\"id\":4,\"id\":5}"));
+        assertEquals("Duplicate key 'id' at offset 8.", ex.getMessage());
+    }
+}
@@ -0,0 +1,184 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunClass;
+import com.crazedout.jsun.JSunProjection;
+import com.crazedout.jsun.JSunResult;
+import com.crazedout.jsun.JSunResultWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunProjection {
+
+    public static class Track {
+        final AtomicInteger lyricsCalls = new AtomicInteger();
+
+        public String getName() {
+            return "Help!";
+        }
+
+        public int getLength() {
+            return 138;
+        }
+
+        public String getLyrics() {
+            lyricsCalls.incrementAndGet();
+            return "Help, I need somebody";
+        }
+    }
+
+    @JSunClass(fields = {"title", "band.name"})
+    public static class Summary {
+        public String getTitle() {
+            return "Revolver";
+        }
+
+        public int getYear() {
+            return 1966;
+        }
+
+        public List<Person> getBand() {
+            return Arrays.asList(new Person("John", "Guitar"), new Person("Ringo", "Drums"));
+        }
+    }
+
+    /**
+     * The keys of json, sorted, as getters come in no particular order.
+     */
+    private static String keys(JSun json) {
+        List<String> keys = new ArrayList<>();
+        for (JSun.KeyValuePair pair : json.getKeyPairList()) keys.add(pair.getName());
+        Collections.sort(keys);
+        return keys.toString();
+    }
+
+    private static Album album() {
+        Album album = new Album();
+        album.setTitle("Help!");
+        album.setYear(1965);
+        album.setSongs(Arrays.asList("Help!", "Yesterday"));
+        album.setMusicians(Arrays.asList(new Person("John", "Guitar"), new Person("Paul", "Bass")));
+        return album;
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        Track track = new Track();
+        JSunProjection projection = JSunProjection.of("name", "LENGTH");
+        JSun json = new JSun(track, projection);
+        assertEquals("[length, name]", keys(json));
+        assertEquals(138, json.get("length"));
+        String expected = json.toString();
+
+        StringBuilder sb = new StringBuilder();
+        JSun.serialize(track, sb, projection);
+        assertEquals(expected, sb.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSun.serialize(track, out, projection);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        out.reset();
+        JSun.serializeCbor(track, out, projection);
+        assertEquals(expected, JSun.parseCbor(out.toByteArray()).toString());
+        // Getters left out are never called.
+        assertEquals(0, track.lyricsCalls.get());
+
+        assertEquals("[length, lyrics, name]", keys(new JSun(track, null)));
+        assertEquals(1, track.lyricsCalls.get());
+    }
+
+    @Test
+    public void testNested() throws IOException {
+        Album album = album();
+        JSunProjection projection = JSunProjection.of("title", "musicians.name", "year");
+        JSun json = new JSun(album, projection);
+        assertEquals("[musicians, title, year]", keys(json));
+        assertTrue(json.toString().contains("\"musicians\":[{\"name\":\"John\"},{\"name\":\"Paul\"}]"));
+        String expected = json.toString();
+        StringBuilder sb = new StringBuilder();
+        JSun.serialize(album, sb, projection);
+        assertEquals(expected, sb.toString());
+        assertEquals("[{\"name\":\"John\"},{\"name\":\"Paul\"}]",
+                new JSun(album.getMusicians(), JSunProjection.of("name")).toString());
+
+        // A whole value covers any fields of it.
+        assertEquals(new JSun(album).get("musicians").toString(),
+                new JSun(album, JSunProjection.of("musicians.name", "musicians")).get("musicians").toString());
+        // Excluded getters stay excluded.
+        assertEquals("{}", new JSun(album, JSunProjection.of("secret")).toString());
+        assertEquals("title,musicians{name}", JSunProjection.of("title", "musicians.name").toString());
+    }
+
+    @Test
+    public void testJSunClassFields() throws IOException {
+        Summary summary = new Summary();
+        JSun json = new JSun(summary);
+        assertEquals("[band, title]", keys(json));
+        assertTrue(json.toString().contains("\"band\":[{\"name\":\"John\"},{\"name\":\"Ringo\"}]"));
+        String expected = json.toString();
+        StringBuilder sb = new StringBuilder();
+        JSun.serialize(summary, sb);
+        assertEquals(expected, sb.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSun.serializeCbor(summary, out);
+        assertEquals(expected, JSun.parseCbor(out.toByteArray()).toString());
+
+        // A projection narrows the fields further, it never adds to them.
+        assertEquals("{\"title\":\"Revolver\"}", new JSun(summary, JSunProjection.of("title", "year")).toString());
+        assertEquals("{\"band\":[{\"name\":\"John\"},{\"name\":\"Ringo\"}]}",
+                new JSun(summary, JSunProjection.of("band")).toString());
+        assertEquals("{\"band\":[{\"instrument\":\"Guitar\"},{\"instrument\":\"Drums\"}]}",
+                new JSun(summary, JSunProjection.of("band.instrument")).toString());
+    }
+
+    @Test
+    public void testResultColumns() throws SQLException, IOException {
+        String[] columns = {"id", "Name", "notes"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR};
+        AtomicInteger[] reads = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+        StubResultSet stub = new StubResultSet(columns, types, 3, (r, c) -> {
+            reads[c].incrementAndGet();
+            return c == 0 ? (Object) (int) (long) r : c == 1 ? "n" + r : "long notes " + r;
+        });
+
+        JSunResult result = new JSunResult(stub.resultSet(), true, JSunProjection.of("name", "id"));
+        assertEquals("[{\"id\":0,\"Name\":\"n0\"},{\"id\":1,\"Name\":\"n1\"},{\"id\":2,\"Name\":\"n2\"}]",
+                new JSun(result.getResultList()).toString());
+        assertEquals(3, reads[0].get());
+        assertEquals(3, reads[1].get());
+        assertEquals(0, reads[2].get());
+
+        for (int pipelineRows : new int[]{0, 2}) {
+            stub = new StubResultSet(columns, types, 3, (r, c) -> {
+                reads[c].incrementAndGet();
+                return c == 0 ? (Object) (int) (long) r : c == 1 ? "n" + r : "long notes " + r;
+            });
+            JSunResultWriter writer = new JSunResultWriter();
+            writer.setProjection(JSunProjection.of("name"));
+            writer.setPipelineRows(pipelineRows);
+            StringWriter out = new StringWriter();
+            assertEquals(3, writer.write(stub.resultSet(), out));
+            assertEquals("[[\"n0\"],[\"n1\"],[\"n2\"]]", out.toString());
+            assertEquals(0, reads[2].get());
+        }
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        assertThrows(RuntimeException.class, () -> JSunProjection.of(""));
+        assertThrows(RuntimeException.class, () -> JSunProjection.of("a..b"));
+        assertThrows(RuntimeException.class, () -> JSunProjection.of("a."));
+    }
+}
@@ -0,0 +1,353 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSFactory;
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunResult;
+import com.crazedout.jsun.JSunResultWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunResult {
+
+    private static final String[] COLUMNS = {"name", "instrument", "id"};
+    private static final int[] TYPES = {Types.VARCHAR, Types.VARCHAR, Types.INTEGER};
+
+    private static StubResultSet beatles() {
+        Object[][] rows = {
+                {"John", "Guitar", 1},
+                {"Paul", "Bass", 2},
+                {"George", "Guitar", 3},
+                {"Ringo", "Drums", 4}};
+        return new StubResultSet(COLUMNS, TYPES, rows);
+    }
+
+    /**
+     * Counts and discards everything written to it.
+     */
+    private static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesToString() throws SQLException, IOException {
+        String expected = new JSunResult(beatles().resultSet()).toString();
+        StubResultSet stub = beatles();
+        StringWriter out = new StringWriter();
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setFetchSize(500);
+        assertEquals(4, writer.write(stub.resultSet(), out));
+        assertEquals(expected, out.toString());
+        assertEquals(500, stub.getFetchSize());
+        assertTrue(stub.isClosed());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(beatles().resultSet(), bytes);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), new JSunResult(beatles().resultSet()).toBytes());
+    }
+
+    @Test
+    public void testTypedColumns() throws SQLException, IOException {
+        String[] columns = {"id", "score", "active", "name", "total"};
+        int[] types = {Types.BIGINT, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.DECIMAL};
+        Object[][] rows = {
+                {9_000_000_000L, 1.5, true, "John", new java.math.BigDecimal("10.25")},
+                {null, null, null, null, null}};
+        String expected = "[{\"id\":9000000000,\"score\":1.5,\"active\":true,\"name\":\"John\",\"total\":10.25}," +
+                "{\"id\":null,\"score\":null,\"active\":null,\"name\":null,\"total\":null}]";
+
+        StringWriter out = new StringWriter();
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        writer.write(new StubResultSet(columns, types, rows).resultSet(), out);
+        assertEquals(expected, out.toString());
+
+        out = new StringWriter();
+        new JSunResultWriter().write(new StubResultSet(columns, types, rows).resultSet(), out);
+        assertEquals("[[9000000000,1.5,true,\"John\",10.25],[null,null,null,null,null]]", out.toString());
+    }
+
+    @Test
+    public void testTemporalColumns() throws SQLException, IOException {
+        String[] columns = {"id", "ts", "day", "at"};
+        int[] types = {Types.INTEGER, Types.TIMESTAMP, Types.DATE, Types.TIME};
+        Timestamp ts = Timestamp.valueOf("2023-05-17 10:11:12.5");
+        Object[][] rows = {
+                {1, ts, Date.valueOf("2023-05-17"), Time.valueOf("10:11:12")},
+                {2, null, null, null}};
+        String expected = "[{\"id\":1,\"ts\":\"" + ts.toInstant() + "\",\"day\":\"2023-05-17\",\"at\":\"10:11:12\"},"
+                + "{\"id\":2,\"ts\":null,\"day\":null,\"at\":null}]";
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(printed));
+        try {
+            JSunResultWriter writer = new JSunResultWriter();
+            writer.setRowsAsObjects(true);
+            StringWriter out = new StringWriter();
+            writer.write(new StubResultSet(columns, types, rows).resultSet(), out);
+            assertEquals(expected, out.toString());
+
+            JSunResult result = new JSunResult(new StubResultSet(columns, types, rows).resultSet(), true);
+            assertEquals(expected, result.toString());
+            assertEquals("2023-05-17", result.getResultList().get(0).get("day"));
+            // toString() validates the Json, as do the other paths of the rows.
+            assertEquals(expected, JSun.parseCbor(result.toCbor()).toString());
+            StringWriter lines = new StringWriter();
+            result.writeNdjson(lines, 0);
+            assertTrue(lines.toString().startsWith(expected.substring(1, expected.indexOf("},{") + 1) + "\n"));
+
+            out = new StringWriter();
+            new JSunResultWriter().write(new StubResultSet(columns, types, rows).resultSet(), out);
+            assertEquals("[[1,\"" + ts.toInstant() + "\",\"2023-05-17\",\"10:11:12\"],[2,null,null,null]]", out.toString());
+            assertEquals(out.toString(), new JSunResult(new StubResultSet(columns, types, rows).resultSet()).toString());
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals("", printed.toString());
+    }
+
+    @Test
+    public void testRowsAsObjects() throws SQLException {
+        JSunResult result = new JSunResult(beatles().resultSet(), true);
+        assertEquals(4, result.getResultList().size());
+        assertEquals("Ringo", result.getResultList().get(3).get("name"));
+        assertTrue(result.toString().startsWith("[{\"name\":\"John\",\"instrument\":\"Guitar\",\"id\":1},"));
+    }
+
+    @Test
+    public void testStreamingEmpty() throws SQLException, IOException {
+        StringWriter out = new StringWriter();
+        new JSunResultWriter().write(new StubResultSet(COLUMNS, TYPES, new Object[0][]).resultSet(), out);
+        assertEquals("[]", out.toString());
+    }
+
+    @Test
+    public void testStreamingManyRows() throws SQLException, IOException {
+        StubResultSet stub = new StubResultSet(COLUMNS, TYPES, 500_000, (r, c) -> c == 2 ? (Object) r.intValue() : "name" + c);
+        CountingWriter out = new CountingWriter();
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.closeResultSetWhenDone(false);
+        assertEquals(500_000, writer.write(stub.resultSet(), out));
+        assertFalse(stub.isClosed());
+        assertTrue(out.count > 500_000 * 20);
+    }
+
+    @Test
+    public void testPipelined() throws SQLException, IOException {
+        String[] columns = {"id", "score", "active", "name", "total", "ratio"};
+        int[] types = {Types.BIGINT, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.DECIMAL, Types.REAL};
+        StubResultSet rows = new StubResultSet(columns, types, 1000, (r, c) -> r % 7 == 0 ? null
+                : new Object[]{r, r * 0.5, r % 2 == 0, "name \"" + r, new java.math.BigDecimal(r + ".10"), r / 4f}[c]);
+        StringWriter expected = new StringWriter();
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        writer.write(rows.resultSet(), expected);
+
+        StubResultSet stub = new StubResultSet(columns, types, 1000, (r, c) -> r % 7 == 0 ? null
+                : new Object[]{r, r * 0.5, r % 2 == 0, "name \"" + r, new java.math.BigDecimal(r + ".10"), r / 4f}[c]);
+        StringWriter out = new StringWriter();
+        writer.setPipelineRows(64);
+        assertEquals(1000, writer.write(stub.resultSet(), out));
+        assertEquals(expected.toString(), out.toString());
+        assertTrue(stub.isClosed());
+
+        StubResultSet slow = beatles().slow(2_000_000);
+        out = new StringWriter();
+        assertEquals(4, writer.write(slow.resultSet(), out));
+        assertEquals(new JSunResult(beatles().resultSet(), true).toString(), out.toString());
+    }
+
+    @Test
+    public void testPipelinedBackpressure() throws SQLException, IOException {
+        AtomicLong fetched = new AtomicLong();
+        StubResultSet stub = new StubResultSet(COLUMNS, TYPES, 100_000, (r, c) -> {
+            fetched.accumulateAndGet(r, Math::max);
+            return c == 2 ? (Object) r.intValue() : "name";
+        });
+        long[] aheadAtStart = {-1};
+        CountingWriter out = new CountingWriter() {
+            @Override
+            public void write(int c) {
+                if (aheadAtStart[0] < 0) {
+                    sleep(200);
+                    aheadAtStart[0] = fetched.get();
+                }
+                super.write(c);
+            }
+        };
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setPipelineRows(40);
+        assertEquals(100_000, writer.write(stub.resultSet(), out));
+        assertTrue(aheadAtStart[0] < 40, "read ahead " + aheadAtStart[0] + " rows");
+        assertTrue(stub.isClosed());
+    }
+
+    @Test
+    public void testPipelinedFailures() {
+        StubResultSet stub = new StubResultSet(COLUMNS, TYPES, 1_000_000, (r, c) -> c == 2 ? (Object) r.intValue() : "name");
+        CountingWriter failing = new CountingWriter() {
+            @Override
+            public void write(String str, int off, int len) {
+                if (count > 10_000) throw new UncheckedIOException(new IOException("Disk full"));
+                super.write(str, off, len);
+            }
+        };
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setPipelineRows(1000);
+        assertThrows(UncheckedIOException.class, () -> writer.write(stub.resultSet(), failing));
+        assertTrue(stub.isClosed());
+
+        StubResultSet broken = new StubResultSet(COLUMNS, TYPES, 1_000_000, (r, c) -> {
+            if (r == 5000) throw new IllegalStateException("Connection reset");
+            return c == 2 ? (Object) r.intValue() : "name";
+        });
+        CountingWriter out = new CountingWriter();
+        RuntimeException ex = assertThrows(IllegalStateException.class, () -> writer.write(broken.resultSet(), out));
+        assertEquals("Connection reset", ex.getMessage());
+        assertTrue(broken.isClosed());
+        assertTrue(out.count < 5000 * 25);
+    }
+
+    @Test
+    public void testPipelinedStuckDriver() throws InterruptedException {
+        Thread caller = Thread.currentThread();
+        CountDownLatch release = new CountDownLatch(1);
+        StubResultSet stuck = new StubResultSet(COLUMNS, TYPES, 1000, (r, c) -> {
+            if (r == 5 && c == 0) {
+                caller.interrupt();
+                // A driver that ignores both the interrupt and the cancel.
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        // Ignored.
+                    }
+                }
+            }
+            return c == 2 ? (Object) r.intValue() : "name";
+        });
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setPipelineRows(40);
+        try {
+            InterruptedIOException ex = assertThrows(InterruptedIOException.class,
+                    () -> writer.write(stuck.resultSet(), new CountingWriter()));
+            assertEquals(1, ex.getSuppressed().length);
+            assertTrue(ex.getSuppressed()[0] instanceof SQLTimeoutException);
+            assertTrue(Thread.interrupted());
+            assertTrue(stuck.isClosed());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testNdjson() throws SQLException, IOException {
+        String expected = "{\"name\":\"John\",\"instrument\":\"Guitar\",\"id\":1}\n"
+                + "{\"name\":\"Paul\",\"instrument\":\"Bass\",\"id\":2}\n"
+                + "{\"name\":\"George\",\"instrument\":\"Guitar\",\"id\":3}\n"
+                + "{\"name\":\"Ringo\",\"instrument\":\"Drums\",\"id\":4}\n";
+        List<String> flushed = new ArrayList<>();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+        JSunResultWriter writer = new JSunResultWriter();
+        writer.setRowsAsObjects(true);
+        writer.setNdjson(true);
+        writer.setFlushRows(3);
+        assertEquals(4, writer.write(beatles().resultSet(), out));
+        assertEquals(expected, out.toString());
+        assertEquals(2, flushed.size());
+        assertEquals(3, flushed.get(0).split("\n").length);
+
+        writer.setPipelineRows(2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(beatles().resultSet(), bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        StringWriter lines = new StringWriter();
+        new JSunResult(beatles().resultSet(), true).writeNdjson(lines, 1);
+        assertEquals(expected, lines.toString());
+    }
+
+    @Test
+    public void testHTMLTable() throws SQLException, IOException {
+        BiFunction<Long, Integer, Object> cells = (r, c) -> c == 2 ? (Object) r.intValue()
+                : c == 0 ? "</script><b>O'Brien</b>" : "line\u2028break";
+        StubResultSet stub = new StubResultSet(COLUMNS, TYPES, 2500, cells);
+        int[] flushes = {0};
+        StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        assertEquals(2500, JSFactory.toHTMLTable(stub.resultSet(), out));
+        assertTrue(stub.isClosed());
+        String html = out.toString();
+        assertTrue(html.startsWith("<script>\n"));
+        assertTrue(html.contains("var jsunTable"));
+        assertEquals(4, html.split("<script>", -1).length - 1);
+        assertEquals(4, html.split("</script>", -1).length - 1);
+        assertTrue(flushes[0] >= 4);
+        assertTrue(html.contains("[{\"name\":\"\\u003c/script>\\u003cb>O'Brien\\u003c/b>\","
+                + "\"instrument\":\"line\\u2028break\",\"id\":0},"));
+
+        String fromResult = JSFactory.toHTMTable(new JSunResult(new StubResultSet(COLUMNS, TYPES, 2500, cells).resultSet(), true));
+        assertEquals(html, fromResult);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
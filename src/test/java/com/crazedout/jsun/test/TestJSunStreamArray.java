@@ -0,0 +1,93 @@
+package com.crazedout.jsun.test;
+
+import com.crazedout.jsun.JSun;
+import com.crazedout.jsun.JSunResultWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSunStreamArray {
+
+    @TempDir
+    Path dir;
+
+    private Path write(String json) throws IOException {
+        Path path = Files.createTempFile(dir, "array", ".json");
+        Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void testStreamResult() throws IOException, SQLException {
+        String[] columns = {"id", "name", "score"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.DOUBLE};
+        int rows = 20_000;
+        Path path = dir.resolve("rows.json");
+        try (OutputStream out = Files.newOutputStream(path)) {
+            JSunResultWriter writer = new JSunResultWriter();
+            writer.setRowsAsObjects(true);
+            writer.write(new StubResultSet(columns, types, rows, (r, c) ->
+                    c == 0 ? r.intValue() : c == 1 ? "n\u00e4me \"" + r + "\" ],[{" : r * 0.5).resultSet(), out);
+        }
+
+        List<Object> ids;
+        try (Stream<JSun> stream = JSun.streamArray(path)) {
+            ids = stream.map(row -> row.get("id")).collect(Collectors.toList());
+        }
+        assertEquals(rows, ids.size());
+        for (int i = 0; i < rows; i++) assertEquals(i, ids.get(i));
+
+        try (Stream<JSun> stream = JSun.streamArray(path)) {
+            assertEquals(ids, stream.parallel().map(row -> row.get("id")).collect(Collectors.toList()));
+        }
+        try (Stream<JSun> stream = JSun.streamArray(path)) {
+            assertEquals("n\u00e4me \"19999\" ],[{", stream.parallel().reduce((a, b) -> b).get().get("name"));
+        }
+
+        Spliterator<JSun> rest = JSun.streamArray(path).spliterator();
+        Spliterator<JSun> prefix = rest.trySplit();
+        assertNotNull(prefix);
+        long[] counts = new long[2];
+        prefix.forEachRemaining(row -> counts[0]++);
+        rest.forEachRemaining(row -> counts[1]++);
+        assertTrue(counts[0] > 0 && counts[1] > 0);
+        assertEquals(rows, counts[0] + counts[1]);
+    }
+
+    @Test
+    public void testFormatting() throws IOException {
+        Path path = write("\ufeff [\n  {\"a\" : \"],[\\\"{\"} ,\n  [1, [2, {\"b\": []}]]\r\n ]\n");
+        List<String> rows = JSun.streamArray(path).map(JSun::toString).collect(Collectors.toList());
+        assertEquals(Arrays.asList("{\"a\":\"],[\\\"{\"}", "[1,[2,{\"b\":[]}]]"), rows);
+        assertEquals(0, JSun.streamArray(write(" [ ] ")).count());
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(write("{}")));
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(write("[{}")));
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(write("")));
+        Path trailing = write("[{},]");
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(trailing).count());
+        Path missing = write("[{} {}]");
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(missing).count());
+        Path scalar = write("[{},1]");
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(scalar).count());
+        Path invalid = write("[{\"a\":01}]");
+        assertThrows(RuntimeException.class, () -> JSun.streamArray(invalid).count());
+    }
+}